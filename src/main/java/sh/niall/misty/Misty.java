@@ -5,11 +5,15 @@ import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
 import org.slf4j.LoggerFactory;
 import sh.niall.misty.cogs.*;
+import sh.niall.misty.utils.audio.AudioGuild;
 import sh.niall.misty.utils.audio.AudioGuildManager;
+import sh.niall.misty.utils.audio.FailedQueryCache;
 import sh.niall.misty.utils.misty.Config;
 import sh.niall.misty.utils.misty.ConfigLoader;
 import sh.niall.misty.utils.misty.Database;
+import sh.niall.misty.utils.misty.Shards;
 import sh.niall.misty.utils.playlists.SongCache;
+import sh.niall.misty.utils.ui.interactions.InteractionManager;
 import sh.niall.yui.Yui;
 import sh.niall.yui.cogs.commands.prefix.PrefixManager;
 import sh.niall.yui.exceptions.CommandException;
@@ -23,32 +27,45 @@ public class Misty {
     public static Config config;
     public static Database database;
     public static Yui yui;
+    public static Shards shards;
+    public static InteractionManager interactions;
+    public static FailedQueryCache failedQueries;
     public static Long ownerId = null;
 
     public static void main(String[] args) throws LoginException, FileNotFoundException, PrefixException, CommandException {
         // Initialize globals
         config = ConfigLoader.loadConfig();
         database = new Database();
+        database.ensureIndexes();
+        database.explainQueries();
+        failedQueries = new FailedQueryCache();
 
         // Generate JDA Builder
         JDABuilder builder = JDABuilder.createDefault(config.getDiscordToken());
         builder.setAudioSendFactory(new NativeAudioSendFactory());
         builder.setActivity(Activity.watching("for messages - ?help"));
 
+        // Route reactions and replies to open menus
+        interactions = new InteractionManager();
+        builder.addEventListeners(interactions);
+
         // Setup Yui
         PrefixManager prefixManager = new PrefixManager(config.getDiscordPrefixes(), config.getBackupPrefix());
         yui = new Yui(builder, prefixManager, true);
 
         // Create the audio manager
+        AudioGuild.queueLookahead = Math.max(1, config.getQueueLookahead());
+        AudioGuild.preloadSeconds = config.getPreloadSeconds();
+        AudioGuild.maxTranscodingGuilds = config.getMaxTranscodingGuilds();
         AudioGuildManager audioGuildManager = new AudioGuildManager(yui);
         SongCache songCache = new SongCache(yui, audioGuildManager.getAudioPlayerManager());
 
         // Add the cogs in
         yui.addCog(
-                new Admin(),
+                new Admin(audioGuildManager, songCache),
                 new ErrorHandler(),
                 new Internet(),
-                new Music(audioGuildManager),
+                new Music(audioGuildManager, songCache),
                 new Playlists(audioGuildManager, songCache),
                 new Reminders(),
                 new Social(),
@@ -56,8 +73,9 @@ public class Misty {
                 new Utilities()
         );
 
-        // Build JDA
-        builder.build();
+        // Build JDA, one connection per shard. Published first so events from early shards can look up the others
+        shards = new Shards(config.getShardCount());
+        shards.login(builder);
         LoggerFactory.getLogger(Misty.class).info("I'm online and ready to go!");
     }
 
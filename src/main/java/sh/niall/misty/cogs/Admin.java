@@ -1,5 +1,14 @@
 package sh.niall.misty.cogs;
 
+import net.dv8tion.jda.api.EmbedBuilder;
+import sh.niall.misty.utils.audio.AudioGuild;
+import sh.niall.misty.utils.audio.AudioGuildManager;
+import sh.niall.misty.utils.audio.AudioStats;
+import sh.niall.misty.utils.audio.AudioUtils;
+import sh.niall.misty.utils.playlists.SongCache;
+import sh.niall.misty.utils.playlists.SongCacheRefresher;
+import sh.niall.misty.utils.playlists.TrackMemoryCache;
+import sh.niall.misty.utils.ui.Helper;
 import sh.niall.yui.cogs.cog.Cog;
 import sh.niall.yui.cogs.commands.annotations.Command;
 import sh.niall.yui.cogs.commands.checks.annotations.Check;
@@ -7,8 +16,18 @@ import sh.niall.yui.cogs.commands.checks.checks.IsOwner;
 import sh.niall.yui.cogs.commands.context.Context;
 import sh.niall.yui.cogs.commands.help.annotations.CommandHelp;
 
+import java.util.Comparator;
+
 public class Admin extends Cog {
 
+    private AudioGuildManager audioGuildManager;
+    private SongCache songCache;
+
+    public Admin(AudioGuildManager audioGuildManager, SongCache songCache) {
+        this.audioGuildManager = audioGuildManager;
+        this.songCache = songCache;
+    }
+
     @Check(check = IsOwner.class)
     @CommandHelp(hidden = true)
     @Command(name = "reboot")
@@ -17,4 +36,74 @@ public class Admin extends Cog {
         System.exit(0);
     }
 
+    @Check(check = IsOwner.class)
+    @CommandHelp(hidden = true)
+    @Command(name = "cachestats")
+    public void _commandCacheStats(Context ctx) {
+        TrackMemoryCache memoryCache = songCache.getMemoryCache();
+        SongCacheRefresher refresher = songCache.getRefresher();
+        long lookups = memoryCache.getHits() + memoryCache.getMisses();
+
+        EmbedBuilder embedBuilder = new EmbedBuilder();
+        embedBuilder.setTitle("Song Cache");
+        embedBuilder.setColor(Helper.randomColor());
+        embedBuilder.addField("Tracks:", String.valueOf(memoryCache.getSize()), true);
+        embedBuilder.addField("Memory:", String.format("%s/%s KB", memoryCache.getCurrentBytes() / 1024, memoryCache.getMaxBytes() / 1024), true);
+        embedBuilder.addField("Hits:", String.valueOf(memoryCache.getHits()), true);
+        embedBuilder.addField("Misses:", String.valueOf(memoryCache.getMisses()), true);
+        embedBuilder.addField("Evictions:", String.valueOf(memoryCache.getEvictions()), true);
+        embedBuilder.addField("Hit Rate:", (lookups == 0) ? "N/A" : String.format("%.1f%%", memoryCache.getHits() * 100.0 / lookups), true);
+        embedBuilder.addField("Searches:", String.format("%s cached, %s hits, %s misses",
+                songCache.getSearchCache().getSize(), songCache.getSearchCache().getHits(), songCache.getSearchCache().getMisses()), true);
+        embedBuilder.addField("Shared Loads:", String.format("%s cache, %s of %s queries",
+                songCache.getCoalescedLoads(), AudioUtils.getCoalescedQueries(), AudioUtils.getStartedQueries() + AudioUtils.getCoalescedQueries()), true);
+        embedBuilder.addField("Refreshed:", String.format("%s (%s changed)", refresher.getRefreshed(), refresher.getChanged()), true);
+        embedBuilder.addField("Refresh Failures:", String.valueOf(refresher.getFailed()), true);
+        embedBuilder.addField("Refresh Status:", refresher.isRunning() ? "Running" : String.format("Idle (last run %ss)", refresher.getLastRunMillis() / 1000), true);
+        ctx.send(embedBuilder.build());
+    }
+
+    @Check(check = IsOwner.class)
+    @CommandHelp(hidden = true)
+    @Command(name = "audiostats")
+    public void _commandAudioStats(Context ctx) {
+        EmbedBuilder embedBuilder = new EmbedBuilder();
+        embedBuilder.setTitle("Audio Delivery");
+        embedBuilder.setColor(Helper.randomColor());
+        embedBuilder.addField("Audio Guilds:", String.valueOf(audioGuildManager.getAudioGuildCount()), true);
+        addAudioStats(embedBuilder, "All Guilds", AudioStats.global);
+        embedBuilder.addField("Query Load Time:", AudioStats.global.getLoadLatency().toString(), false);
+
+        // The guilds spending the most time transcoding
+        embedBuilder.addField("Transcoding:", String.format("%s/%s guilds", AudioGuild.getTranscodingGuildCount(),
+                (AudioGuild.maxTranscodingGuilds < 0) ? "∞" : AudioGuild.maxTranscodingGuilds), true);
+        StringBuilder builder = new StringBuilder();
+        audioGuildManager.getAudioGuilds().stream()
+                .filter(guild -> guild.getAudioStats().getFramesTranscoded() > 0)
+                .sorted(Comparator.comparingLong((AudioGuild guild) -> guild.getAudioStats().getFramesTranscoded()).reversed())
+                .limit(5)
+                .forEach(guild -> builder.append(String.format("%s: %ss at %s%%\n",
+                        guild.getGuildId(), guild.getAudioStats().getTranscodedSeconds(), guild.getVolume())));
+        embedBuilder.addField("Top Transcoders:", (builder.length() == 0) ? "None" : builder.toString(), false);
+
+        // Also show this guild if it's playing
+        AudioGuild audioGuild = ctx.isGuildMessage() ? audioGuildManager.findAudioGuild(ctx.getGuild().getIdLong()) : null;
+        if (audioGuild != null)
+            addAudioStats(embedBuilder, "This Guild", audioGuild.getAudioStats());
+        ctx.send(embedBuilder.build());
+    }
+
+    private void addAudioStats(EmbedBuilder embedBuilder, String name, AudioStats audioStats) {
+        long frames = audioStats.getFramesProvided() + audioStats.getFramesMissed();
+        embedBuilder.addField(name + " Frames:", String.format("%s provided, %s missed (%s)",
+                audioStats.getFramesProvided(), audioStats.getFramesMissed(),
+                (frames == 0) ? "N/A" : String.format("%.2f%%", audioStats.getFramesMissed() * 100.0 / frames)), false);
+        embedBuilder.addField("Underruns:", String.valueOf(audioStats.getUnderruns()), true);
+        embedBuilder.addField("Transcoded:", audioStats.getTranscodedSeconds() + "s", true);
+        embedBuilder.addField("Stuck:", String.format("%s (last threshold %sms)", audioStats.getStuckEvents(), audioStats.getLastStuckThresholdMs()), true);
+        embedBuilder.addField("Jitter:", audioStats.getJitter().toString(), false);
+        embedBuilder.addField("Song Ready Time:", audioStats.getReadyLatency().toString(), false);
+        embedBuilder.addField("Time To First Frame:", audioStats.getFirstFrame().toString(), false);
+    }
+
 }
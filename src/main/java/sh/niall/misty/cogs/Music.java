@@ -8,12 +8,17 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.User;
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
 import sh.niall.misty.errors.AudioException;
 import sh.niall.misty.errors.MistyException;
 import sh.niall.misty.utils.audio.AudioGuild;
 import sh.niall.misty.utils.audio.AudioGuildManager;
 import sh.niall.misty.utils.audio.AudioUtils;
 import sh.niall.misty.utils.audio.helpers.TrackRequest;
+import sh.niall.misty.utils.audio.interfaces.TrackStreamCallback;
+import sh.niall.misty.utils.playlists.SongCache;
 import sh.niall.misty.utils.settings.UserSettings;
 import sh.niall.misty.utils.ui.Helper;
 import sh.niall.misty.utils.ui.paginator.Paginator;
@@ -29,14 +34,18 @@ import sh.niall.yui.exceptions.YuiException;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
 public class Music extends Cog {
 
     private AudioGuildManager audioGuildManager;
+    private SongCache songCache;
+    private final Logger logger = LoggerFactory.getLogger(Music.class);
 
-    public Music(AudioGuildManager audioGuildManager) {
+    public Music(AudioGuildManager audioGuildManager, SongCache songCache) {
         this.audioGuildManager = audioGuildManager;
+        this.songCache = songCache;
     }
 
     /**
@@ -75,6 +84,7 @@ public class Music extends Cog {
     public void _commandPlay(Context ctx) throws CommandException, InterruptedException, AudioException, MistyException {
         if (ctx.getArguments().isEmpty())
             throw new CommandException("Please provide a URL for me to play! If you were looking to resume playback, use `resume` instead.");
+        long requested = System.nanoTime();
 
         // Handle summon checks
         AudioUtils.runSummon(audioGuildManager, ctx);
@@ -86,25 +96,68 @@ public class Music extends Cog {
         boolean usedSearch = urls.isEmpty();
         AudioGuild audioGuild = audioGuildManager.getAudioGuild(ctx.getGuild().getIdLong());
 
-        // Run the Query
-        List<AudioTrack> trackList = AudioUtils.runQuery(audioGuildManager.getAudioPlayerManager(), queryString, ctx.getGuild());
-
-        // Queue the music
-        for (AudioTrack audioTrack : trackList) {
-            audioGuild.addToQueue(new TrackRequest(audioTrack, ctx.getAuthor().getIdLong()));
-            if (usedSearch) // Only add the first found song
-                break;
+        long author = ctx.getAuthor().getIdLong();
+
+        // Searches only need the first result, repeat searches come from the cache
+        if (usedSearch) {
+            songCache.search(ctx.getGuild(), messageArgs).whenComplete((audioTrack, error) -> {
+                try {
+                    if (error != null)
+                        throw (error instanceof CompletionException) ? error.getCause() : error;
+                    audioGuild.addToQueue(new TrackRequest(audioTrack, author));
+                    audioGuild.playIfIdle(requested);
+                    ctx.send("Added the song `" + audioTrack.getInfo().title + "` to the queue!");
+                } catch (YuiException e) {
+                    ctx.send("⚠️ " + e.getMessage());
+                } catch (Throwable e) {
+                    this.logger.error(String.format("Failed to play the search %s", messageArgs), e);
+                    ctx.send("There was an error getting the track.");
+                }
+            });
+            return;
         }
 
-        // Play the music
-        if (audioGuild.getAudioPlayer().getPlayingTrack() == null)
-            audioGuild.play();
+        // Stream the URL, playback starts as soon as the first song loads
+        AudioUtils.streamQuery(audioGuildManager.getAudioPlayerManager(), queryString, ctx.getGuild(), new TrackStreamCallback() {
+            private String firstTitle = null;
+            private YuiException queueError = null;
+
+            @Override
+            public int tracksLoaded(List<AudioTrack> tracks) throws YuiException {
+                if (firstTitle == null)
+                    firstTitle = tracks.get(0).getInfo().title;
+
+                int added = 0;
+                try {
+                    for (AudioTrack audioTrack : tracks) {
+                        audioGuild.addToQueue(new TrackRequest(audioTrack, author));
+                        added++;
+                    }
+                } catch (CommandException e) {
+                    // Keep the songs which made it in, the error is shown once we're finished
+                    if (added == 0)
+                        throw e;
+                    queueError = e;
+                } finally {
+                    audioGuild.playIfIdle(requested);
+                }
+                return added;
+            }
 
-        // Inform the invoker
-        if (trackList.size() == 1 || usedSearch)
-            ctx.send("Added the song `" + trackList.get(0).getInfo().title + "` to the queue!");
-        else
-            ctx.send("Added `" + trackList.size() + "` songs to the queue!");
+            @Override
+            public void finished(int total, YuiException error) {
+                // Inform the invoker
+                if (total == 1)
+                    ctx.send("Added the song `" + firstTitle + "` to the queue!");
+                else if (total > 1)
+                    ctx.send("Added `" + total + "` songs to the queue!");
+
+                if (error == null)
+                    error = queueError;
+                if (error != null)
+                    ctx.send("⚠️ " + error.getMessage());
+            }
+        });
     }
 
     @Check(check = IsGuildMessage.class)
@@ -142,7 +195,7 @@ public class Music extends Cog {
 
         audioGuild.resume();
         audioGuild.setLastTextChannel(ctx.getChannel().getIdLong());
-        ctx.send("Resuming! The current song is: " + audioGuild.getCurrentSong().audioTrack.getInfo().title);
+        ctx.send("Resuming! The current song is: " + audioGuild.getCurrentSong().title);
     }
 
     @Check(check = IsGuildMessage.class)
@@ -198,7 +251,7 @@ public class Music extends Cog {
         }
         audioGuild.skipTo(skipTo - 1);
         audioGuild.setLastTextChannel(ctx.getChannel().getIdLong());
-        ctx.send("Skipping to song: " + audioGuild.getCurrentSong().audioTrack.getInfo().title);
+        ctx.send("Skipping to song: " + audioGuild.getCurrentSong().title);
     }
 
     @Check(check = IsGuildMessage.class)
@@ -261,20 +314,24 @@ public class Music extends Cog {
         if (trackRequest == null || audioGuild.isPaused())
             throw new CommandException("I'm currently not playing anything!");
 
+        AudioTrack audioTrack = trackRequest.getAudioTrack();
+        if (audioTrack == null)
+            throw new CommandException("The next song is still loading, try again in a moment!");
+
         // Send the embed
         String duration = String.format(
                 "%s/%s",
-                AudioUtils.durationToString(trackRequest.audioTrack.getPosition()),
-                AudioUtils.durationToString(trackRequest.audioTrack.getDuration())
+                AudioUtils.durationToString(audioTrack.getPosition()),
+                AudioUtils.durationToString(trackRequest.duration)
         );
 
         EmbedBuilder embedBuilder = new EmbedBuilder();
-        embedBuilder.setTitle("Now Playing!", trackRequest.audioTrack.getInfo().uri);
-        embedBuilder.setDescription("From " + StringUtils.capitalize(trackRequest.audioTrack.getSourceManager().getSourceName()));
+        embedBuilder.setTitle("Now Playing!", trackRequest.uri);
+        embedBuilder.setDescription("From " + StringUtils.capitalize(trackRequest.sourceName));
         embedBuilder.setImage(audioGuild.getArtwork());
         embedBuilder.setColor(Helper.randomColor());
         embedBuilder.setAuthor("Requested by: " + UserSettings.getName(ctx, trackRequest.requestAuthor), null, UserSettings.getAvatarUrl(ctx, trackRequest.requestAuthor));
-        embedBuilder.addField("Title:", trackRequest.audioTrack.getInfo().title, true);
+        embedBuilder.addField("Title:", trackRequest.title, true);
         embedBuilder.addField("Duration:", duration, false);
         embedBuilder.addField("Volume:", audioGuild.getVolume() + "%", true);
         ctx.send(embedBuilder.build());
@@ -366,7 +423,7 @@ public class Music extends Cog {
 
         audioGuild.seek(totalTime);
         audioGuild.setLastTextChannel(ctx.getChannel().getIdLong());
-        ctx.send("Seeking to: " + AudioUtils.durationToString(audioGuild.getCurrentSong().audioTrack.getPosition()));
+        ctx.send("Seeking to: " + AudioUtils.durationToString(totalTime));
     }
 
     @Check(check = IsGuildMessage.class)
@@ -384,7 +441,7 @@ public class Music extends Cog {
 
         audioGuild.restart();
         audioGuild.setLastTextChannel(ctx.getChannel().getIdLong());
-        ctx.send("Restarting song: " + audioGuild.getCurrentSong().audioTrack.getInfo().title);
+        ctx.send("Restarting song: " + audioGuild.getCurrentSong().title);
     }
 
     @Check(check = IsGuildMessage.class)
@@ -397,7 +454,8 @@ public class Music extends Cog {
 
         // Check if there's songs currently in the queue
         AudioGuild audioGuild = audioGuildManager.getAudioGuild(ctx.getGuild().getIdLong());
-        if (audioGuild.getQueue().isEmpty())
+        List<TrackRequest> queue = audioGuild.getQueue();
+        if (queue.isEmpty())
             throw new CommandException("The queue is currently empty, request a song!");
 
         // Setup the song loop
@@ -407,23 +465,23 @@ public class Music extends Cog {
         int trackNumber = 1;
 
         // Loop over all the songs and add them to the queue
-        for (List<TrackRequest> requests : ListUtils.partition(new ArrayList<>(audioGuild.getQueue()), 5)) {
+        for (List<TrackRequest> requests : ListUtils.partition(queue, 5)) {
             EmbedBuilder embedBuilder = new EmbedBuilder();
             embedBuilder.setTitle("Music Queue");
             embedBuilder.setColor(embedColor);
             StringBuilder builder = new StringBuilder();
             for (TrackRequest request : requests) {
                 // Request user
-                User user = getYui().getJda().getUserById(request.requestAuthor);
+                User user = Misty.shards.getUserById(request.requestAuthor);
                 String requester = (user != null) ? user.getAsMention() : "Unknown User";
 
                 // Add the song to the builder (Looks neater than using fields)
-                builder.append(String.format("**%s. %s**\n", trackNumber, request.audioTrack.getInfo().title));
+                builder.append(String.format("**%s. %s**\n", trackNumber, request.title));
                 builder.append(String.format("Requested by: %s\n", requester));
-                builder.append(String.format("Length: %s\n", AudioUtils.durationToString(request.audioTrack.getDuration())));
-                builder.append(String.format("Url: %s\n\n", request.audioTrack.getInfo().uri));
+                builder.append(String.format("Length: %s\n", AudioUtils.durationToString(request.duration)));
+                builder.append(String.format("Url: %s\n\n", request.uri));
                 trackNumber++;
-                queueTotalTime += request.audioTrack.getDuration();
+                queueTotalTime += request.duration;
             }
             embedBuilder.setDescription(builder.toString());
             embedBuilders.add(embedBuilder);
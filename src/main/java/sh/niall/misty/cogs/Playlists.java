@@ -11,6 +11,7 @@ import net.dv8tion.jda.api.entities.User;
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
+import org.slf4j.LoggerFactory;
 import sh.niall.misty.Misty;
 import sh.niall.misty.errors.AudioException;
 import sh.niall.misty.errors.MistyException;
@@ -29,6 +30,7 @@ import sh.niall.misty.utils.playlists.enums.Permission;
 import sh.niall.misty.utils.settings.UserSettings;
 import sh.niall.misty.utils.ui.Helper;
 import sh.niall.misty.utils.ui.Menu;
+import sh.niall.misty.utils.ui.interactions.Confirmation;
 import sh.niall.misty.utils.ui.paginator.Paginator;
 import sh.niall.yui.cogs.commands.annotations.Group;
 import sh.niall.yui.cogs.commands.annotations.GroupCommand;
@@ -42,7 +44,9 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Playlists extends MistyCog {
 
@@ -59,6 +63,17 @@ public class Playlists extends MistyCog {
         this.audioGuildManager = audioGuildManager;
         this.songCache = songCache;
         this.cogDescription = "Everything to do with playlists!";
+
+        // Move any old song lists over in the background so startup isn't held up
+        ExecutorService migrator = Executors.newSingleThreadExecutor();
+        migrator.execute(() -> {
+            try {
+                Playlist.migrateSongLists(db, songCache);
+            } catch (Exception e) {
+                LoggerFactory.getLogger(Playlists.class).error("Playlist migration failed!", e);
+            }
+        });
+        migrator.shutdown();
     }
 
     @CommandHelp(desc = "Commands for handling playlists")
@@ -107,18 +122,20 @@ public class Playlists extends MistyCog {
         embedBuilder.setTitle("Playlist delete confirm!");
         embedBuilder.setDescription("Are you sure you want to delete the playlist " + friendlyName);
         embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
-        embedBuilder.addField("Songs:", String.valueOf(playlist.songList.size()), true);
+        embedBuilder.addField("Songs:", String.valueOf(playlist.getSongCount()), true);
         if (stringBuilder.length() != 0)
             embedBuilder.addField("Editors:", stringBuilder.toString(), true);
         embedBuilder.addField("Plays:", String.valueOf(playlist.plays), true);
 
         // Handle the result
-        if (sendConfirmation(ctx, embedBuilder.build())) {
-            playlist.delete();
-            ctx.send("Playlist `" + friendlyName + "` deleted!");
-        } else {
-            ctx.send("Playlist delete canceled");
-        }
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (confirmed) {
+                playlist.delete();
+                ctx.send("Playlist `" + friendlyName + "` deleted!");
+            } else {
+                ctx.send("Playlist delete canceled");
+            }
+        });
     }
 
     @CommandHelp(desc = "Edit a playlists information", arguments = {"Playlist Name"})
@@ -136,7 +153,7 @@ public class Playlists extends MistyCog {
                 .setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
 
         // Present the menu and ask what they want.
-        int menuOption = Menu.showMenu(
+        whenAnswered(ctx, Menu.showMenu(
                 ctx,
                 "What would you like to edit?",
                 new String[]{
@@ -148,198 +165,232 @@ public class Playlists extends MistyCog {
                         "Remove Editor",
                         "Change Ownership",
                 }
-        );
-
-        // Since all the other logic is done in a loop, handle the prompts first
-        switch (menuOption) {
-            case 1: // Rename
-                ctx.send("What would you like to rename the playlist to?");
-                break;
-            case 2: // Description
-                ctx.send("What would you like the playlist description to be?\n(Reply with `clear` to remove the current description)");
-                break;
-            case 3: // Image
-                ctx.send("What would you like the playlist image to be?\n(Reply with `clear` to remove the current image)");
-                break;
-            case 4: // Privacy
-                ctx.send("Would you like the playlist to be private? Making a playlist private means only editors and yourself will be able to play it. yes/no");
-                break;
-            case 5: // Add Editor
-                if (playlist.editors.size() >= maxEditors)
-                    throw new CommandException("You can't have more than " + maxEditors + " editors! Please remove an editor from the playlist first.");
-                ctx.send("Who would you like to add to the playlist editor list?");
-                break;
-            case 6: // Remove Editor
-                if (playlist.editors.isEmpty())
-                    throw new CommandException("You don't have any playlist editors, so you can't remove any!");
-                ctx.send("Who would you like to remove from the playlist editor list?");
-                break;
-            case 7: // Change Ownership
-                ctx.send("Who would you like the new owner to be?");
-                break;
-        }
-
-        // Using Atomic to keep track of how many iterations
-        AtomicInteger attempts = new AtomicInteger(0);
-        inputLoop:
-        while (true) {
-            if (attempts.incrementAndGet() == 4)
-                throw new CommandException("Exiting edit, you've failed too many attempts.");
+        ), menuOption -> {
+            // Handle the prompt, then listen for their answer
+            switch (menuOption) {
+                case 1: // Rename
+                    ctx.send("What would you like to rename the playlist to?");
+                    break;
+                case 2: // Description
+                    ctx.send("What would you like the playlist description to be?\n(Reply with `clear` to remove the current description)");
+                    break;
+                case 3: // Image
+                    ctx.send("What would you like the playlist image to be?\n(Reply with `clear` to remove the current image)");
+                    break;
+                case 4: // Privacy
+                    ctx.send("Would you like the playlist to be private? Making a playlist private means only editors and yourself will be able to play it. yes/no");
+                    break;
+                case 5: // Add Editor
+                    if (playlist.editors.size() >= maxEditors)
+                        throw new CommandException("You can't have more than " + maxEditors + " editors! Please remove an editor from the playlist first.");
+                    ctx.send("Who would you like to add to the playlist editor list?");
+                    break;
+                case 6: // Remove Editor
+                    if (playlist.editors.isEmpty())
+                        throw new CommandException("You don't have any playlist editors, so you can't remove any!");
+                    ctx.send("Who would you like to remove from the playlist editor list?");
+                    break;
+                case 7: // Change Ownership
+                    ctx.send("Who would you like the new owner to be?");
+                    break;
+            }
+            awaitEdit(ctx, playlist, embedBuilder, menuOption, 1);
+        });
+    }
 
-            // All need a new message, so listen for it
-            String newMessage = getNextMessage(ctx);
+    /**
+     * Listens for the users answer to an edit prompt, asking again if it's invalid
+     *
+     * @param ctx          The command context
+     * @param playlist     The playlist being edited
+     * @param embedBuilder The confirmation embed, describing the changes
+     * @param menuOption   The edit they picked
+     * @param attempt      Which attempt this is
+     */
+    private void awaitEdit(Context ctx, Playlist playlist, EmbedBuilder embedBuilder, int menuOption, int attempt) {
+        whenAnswered(ctx, getNextMessage(ctx), newMessage -> {
             if (newMessage == null)
                 throw new CommandException("Exiting edit, you ran out of time!");
-            String trimmed = newMessage.trim();
 
             try {
-                switch (menuOption) {
-                    case 1:
-                        if (playlist.friendlyName.equals(newMessage))
-                            throw new CommandException("The old and new playlist names match!");
-                        PlaylistUtils.validatePlaylistName(newMessage);
-                        if (db.find(Filters.and(Filters.eq("author", playlist.author), Filters.eq("searchName", Playlist.generateSearchName(newMessage)))).first() != null)
-                            throw new CommandException("You already have a playlist called: " + newMessage);
-                        embedBuilder.addField("Old Name:", playlist.friendlyName, true);
-                        embedBuilder.addField("New Name:", newMessage, true);
-                        playlist.friendlyName = newMessage;
-                        playlist.searchName = Playlist.generateSearchName(newMessage);
-                        break inputLoop;
-                    case 2:
-                        if (trimmed.toLowerCase().equals("clear"))
-                            trimmed = "";
-                        else
-                            PlaylistUtils.validatePlaylistDescription(trimmed);
-
-                        embedBuilder.addField("Old Description:", playlist.description, false);
-                        embedBuilder.addField("New Description:", trimmed, false);
-                        playlist.description = trimmed;
-                        break inputLoop;
-                    case 3:
-                        String url;
-                        if (trimmed.toLowerCase().equals("clear")) {
-                            url = "";
-                            embedBuilder.addField("New Image:", "You've decided to remove the current image. Are you sure?", true);
-
-                        } else {
-                            List<Url> urls = new UrlDetector(trimmed, UrlDetectorOptions.Default).detect();
-                            if (urls.isEmpty())
-                                throw new CommandException("Provided URL is invalid");
-                            url = urls.get(0).getFullUrl();
-                            String[] splits = url.split("\\.");
-                            String suffix = splits[splits.length - 1];
-                            if (!(suffix.equals("png") || suffix.equals("jpg") || suffix.equals("jpeg") || suffix.equals("gif")))
-                                throw new CommandException("Playlist images must be a png, jpeg, jpg or gif");
-                            embedBuilder.addField("New Image:", "Please verify the image is displaying correctly.", true);
-                            embedBuilder.setThumbnail(newMessage);
-                        }
-                        playlist.image = url;
-                        break inputLoop;
-                    case 4:
-                        Set<String> yes = Set.of("true", "yes", "ya", "y", "ye", "ok");
-                        Set<String> no = Set.of("false", "no", "n", "nope");
-                        String choice = trimmed.toLowerCase();
-                        if (yes.contains(choice)) {
-                            playlist.isPrivate = true;
-                            embedBuilder.addField("Playlist Privacy:", "You have decided to make this playlist private", true);
-                            break inputLoop;
-                        } else if (no.contains(choice)) {
-                            playlist.isPrivate = false;
-                            embedBuilder.addField("Playlist Privacy:", "You have decided to make this playlist public", true);
-                            break inputLoop;
-                        }
-                        throw new CommandException("Invalid choice given.");
-                    case 5:
-                        String newEditor = trimmed.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
-                        if (!newEditor.matches("\\d+"))
-                            throw new CommandException("Invalid user! Please provide a valid user to add as an editor.");
-
-                        long newTarget = Long.parseLong(newEditor);
-
-                        if (playlist.editors.contains(newTarget))
-                            throw new CommandException("They're already an editor!");
-
-                        if (PlaylistUtils.targetDoesntExist(ctx, newTarget))
-                            throw new CommandException("I don't know who that is! Please make sure the editor you're trying to add is in this server.");
-
-                        if (ctx.getJda().getUserById(newTarget).isBot())
-                            throw new CommandException("You can't make a bot an editor!");
-
-                        playlist.editors.add(newTarget);
-                        embedBuilder.addField("New editor:", UserSettings.getName(ctx, newTarget), false);
-                        embedBuilder.addField("WARNING:", "Editors can Add and Remove songs from a playlist. Please make sure you trust who you're adding.", false);
-                        embedBuilder.setColor(Color.RED);
-                        break inputLoop;
-                    case 6:
-                        String toRemove = trimmed.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
-                        if (!toRemove.matches("\\d+"))
-                            throw new CommandException("Invalid user! Please provide a valid user to remove.");
-
-                        long removeTarget = Long.parseLong(toRemove);
-                        if (!playlist.editors.contains(removeTarget))
-                            throw new CommandException("They're not an editor for this playlist.");
-
-                        playlist.editors.remove(removeTarget);
-                        embedBuilder.addField("Removing editor:", UserSettings.getName(ctx, removeTarget), false);
-                        embedBuilder.setColor(Color.RED);
-                        break inputLoop;
-                    case 7:
-                        String newOwner = newMessage.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
-                        if (!newOwner.matches("\\d+"))
-                            throw new CommandException("Invalid user! Please provide a valid user to change ownership to.");
-
-                        long newOwnerLong = Long.parseLong(newOwner);
-                        if (PlaylistUtils.targetDoesntExist(ctx, newOwnerLong))
-                            throw new CommandException("I don't know who that is! Please make sure the new owner is in this server.");
-
-                        if (ctx.getJda().getUserById(newOwnerLong).isBot())
-                            throw new CommandException("You can't make a bot an owner of a playlist!");
-
-                        if (db.count(Filters.eq("author", newOwnerLong)) >= maxPlaylists)
-                            throw new CommandException("They already have the maximum amount of playlists!");
-
-                        if (db.find(Filters.and(Filters.eq("author", newOwnerLong), Filters.eq("searchName", playlist.searchName))).first() != null)
-                            throw new CommandException("They already have a playlist called " + playlist.friendlyName);
-
-                        embedBuilder.addField("New Owner:", UserSettings.getName(ctx, newOwnerLong), false);
-                        embedBuilder.addField("WARNING:", "You will lose access to this playlist and the playlist editors will be reset!", false);
-                        embedBuilder.setColor(Color.RED);
-                        playlist.editors = new ArrayList<>();
-                        playlist.author = newOwnerLong;
-                        break inputLoop;
-                }
+                applyEdit(ctx, playlist, embedBuilder, menuOption, newMessage);
             } catch (CommandException error) {
+                if (attempt >= 3)
+                    throw new CommandException("Exiting edit, you've failed too many attempts.");
                 ctx.send("That won't work, please try again!\n`" + error.getMessage() + "`");
+                awaitEdit(ctx, playlist, embedBuilder, menuOption, attempt + 1);
+                return;
+            }
+
+            if (menuOption != 7) {
+                confirmEdit(ctx, playlist, embedBuilder);
+                return;
             }
-        }
 
-        if (menuOption == 7) { // Validate new ownership with the new owner
+            // Validate new ownership with the new owner
             EmbedBuilder targetEmbed = new EmbedBuilder()
                     .setTitle("Playlist Transfer")
                     .setDescription("Would you like to take ownership of the `" + playlist.friendlyName + "` playlist?")
                     .setColor(Color.YELLOW)
                     .setAuthor(UserSettings.getName(ctx, playlist.author), null, ctx.getJda().getUserById(playlist.author).getEffectiveAvatarUrl());
+            CompletableFuture<Boolean> transfer = Confirmation.ask(ctx.getChannel(), targetEmbed.build(), playlist.author);
+            whenAnswered(ctx, transfer.exceptionally(error -> null), accepted -> {
+                if (accepted == null)
+                    throw new CommandException("Transfer canceled! New owner took too long to respond.");
+                if (!accepted)
+                    throw new CommandException("Transfer canceled! The new owner declined!");
+                confirmEdit(ctx, playlist, embedBuilder);
+            });
+        });
+    }
 
-            boolean targetDecision;
-            try {
-                targetDecision = sendConfirmation(ctx, targetEmbed.build(), playlist.author);
-            } catch (CommandException error) {
-                ctx.send("Transfer canceled! New owner took too long to respond.");
+    /**
+     * Applies the users answer to the playlist and describes the change in the confirmation embed
+     *
+     * @param ctx          The command context
+     * @param playlist     The playlist being edited
+     * @param embedBuilder The confirmation embed
+     * @param menuOption   The edit they picked
+     * @param newMessage   Their answer
+     * @throws CommandException Thrown if their answer is invalid
+     */
+    private void applyEdit(Context ctx, Playlist playlist, EmbedBuilder embedBuilder, int menuOption, String newMessage) throws CommandException {
+        String trimmed = newMessage.trim();
+        switch (menuOption) {
+            case 1:
+                if (playlist.friendlyName.equals(newMessage))
+                    throw new CommandException("The old and new playlist names match!");
+                PlaylistUtils.validatePlaylistName(newMessage);
+                if (db.find(Filters.and(Filters.eq("author", playlist.author), Filters.eq("searchName", Playlist.generateSearchName(newMessage)))).first() != null)
+                    throw new CommandException("You already have a playlist called: " + newMessage);
+                embedBuilder.addField("Old Name:", playlist.friendlyName, true);
+                embedBuilder.addField("New Name:", newMessage, true);
+                playlist.friendlyName = newMessage;
+                playlist.searchName = Playlist.generateSearchName(newMessage);
                 return;
-            }
-            if (!targetDecision)
-                throw new CommandException("Transfer canceled! The new owner declined!");
-        }
+            case 2:
+                if (trimmed.toLowerCase().equals("clear"))
+                    trimmed = "";
+                else
+                    PlaylistUtils.validatePlaylistDescription(trimmed);
+
+                embedBuilder.addField("Old Description:", playlist.description, false);
+                embedBuilder.addField("New Description:", trimmed, false);
+                playlist.description = trimmed;
+                return;
+            case 3:
+                String url;
+                if (trimmed.toLowerCase().equals("clear")) {
+                    url = "";
+                    embedBuilder.addField("New Image:", "You've decided to remove the current image. Are you sure?", true);
+
+                } else {
+                    List<Url> urls = new UrlDetector(trimmed, UrlDetectorOptions.Default).detect();
+                    if (urls.isEmpty())
+                        throw new CommandException("Provided URL is invalid");
+                    url = urls.get(0).getFullUrl();
+                    String[] splits = url.split("\\.");
+                    String suffix = splits[splits.length - 1];
+                    if (!(suffix.equals("png") || suffix.equals("jpg") || suffix.equals("jpeg") || suffix.equals("gif")))
+                        throw new CommandException("Playlist images must be a png, jpeg, jpg or gif");
+                    embedBuilder.addField("New Image:", "Please verify the image is displaying correctly.", true);
+                    embedBuilder.setThumbnail(newMessage);
+                }
+                playlist.image = url;
+                return;
+            case 4:
+                Set<String> yes = Set.of("true", "yes", "ya", "y", "ye", "ok");
+                Set<String> no = Set.of("false", "no", "n", "nope");
+                String choice = trimmed.toLowerCase();
+                if (yes.contains(choice)) {
+                    playlist.isPrivate = true;
+                    embedBuilder.addField("Playlist Privacy:", "You have decided to make this playlist private", true);
+                    return;
+                } else if (no.contains(choice)) {
+                    playlist.isPrivate = false;
+                    embedBuilder.addField("Playlist Privacy:", "You have decided to make this playlist public", true);
+                    return;
+                }
+                throw new CommandException("Invalid choice given.");
+            case 5:
+                String newEditor = trimmed.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
+                if (!newEditor.matches("\\d+"))
+                    throw new CommandException("Invalid user! Please provide a valid user to add as an editor.");
 
-        // Confirm and edit
-        if (sendConfirmation(ctx, embedBuilder.build())) {
-            playlist.save();
-            ctx.send("Playlist edited!");
-        } else {
-            ctx.send("Playlist edit canceled!");
+                long newTarget = Long.parseLong(newEditor);
+
+                if (playlist.editors.contains(newTarget))
+                    throw new CommandException("They're already an editor!");
+
+                if (PlaylistUtils.targetDoesntExist(ctx, newTarget))
+                    throw new CommandException("I don't know who that is! Please make sure the editor you're trying to add is in this server.");
+
+                if (ctx.getJda().getUserById(newTarget).isBot())
+                    throw new CommandException("You can't make a bot an editor!");
+
+                playlist.editors.add(newTarget);
+                embedBuilder.addField("New editor:", UserSettings.getName(ctx, newTarget), false);
+                embedBuilder.addField("WARNING:", "Editors can Add and Remove songs from a playlist. Please make sure you trust who you're adding.", false);
+                embedBuilder.setColor(Color.RED);
+                return;
+            case 6:
+                String toRemove = trimmed.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
+                if (!toRemove.matches("\\d+"))
+                    throw new CommandException("Invalid user! Please provide a valid user to remove.");
+
+                long removeTarget = Long.parseLong(toRemove);
+                if (!playlist.editors.contains(removeTarget))
+                    throw new CommandException("They're not an editor for this playlist.");
+
+                playlist.editors.remove(removeTarget);
+                embedBuilder.addField("Removing editor:", UserSettings.getName(ctx, removeTarget), false);
+                embedBuilder.setColor(Color.RED);
+                return;
+            case 7:
+                String newOwner = newMessage.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
+                if (!newOwner.matches("\\d+"))
+                    throw new CommandException("Invalid user! Please provide a valid user to change ownership to.");
+
+                long newOwnerLong = Long.parseLong(newOwner);
+                if (PlaylistUtils.targetDoesntExist(ctx, newOwnerLong))
+                    throw new CommandException("I don't know who that is! Please make sure the new owner is in this server.");
+
+                if (ctx.getJda().getUserById(newOwnerLong).isBot())
+                    throw new CommandException("You can't make a bot an owner of a playlist!");
+
+                if (db.count(Filters.eq("author", newOwnerLong)) >= maxPlaylists)
+                    throw new CommandException("They already have the maximum amount of playlists!");
+
+                if (db.find(Filters.and(Filters.eq("author", newOwnerLong), Filters.eq("searchName", playlist.searchName))).first() != null)
+                    throw new CommandException("They already have a playlist called " + playlist.friendlyName);
+
+                embedBuilder.addField("New Owner:", UserSettings.getName(ctx, newOwnerLong), false);
+                embedBuilder.addField("WARNING:", "You will lose access to this playlist and the playlist editors will be reset!", false);
+                embedBuilder.setColor(Color.RED);
+                playlist.editors = new ArrayList<>();
+                playlist.author = newOwnerLong;
+                return;
         }
     }
 
+    /**
+     * Asks the user to confirm the edit, saving the playlist if they do
+     *
+     * @param ctx          The command context
+     * @param playlist     The edited playlist
+     * @param embedBuilder The confirmation embed
+     */
+    private void confirmEdit(Context ctx, Playlist playlist, EmbedBuilder embedBuilder) {
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (confirmed) {
+                playlist.save();
+                ctx.send("Playlist edited!");
+            } else {
+                ctx.send("Playlist edit canceled!");
+            }
+        });
+    }
+
     @CommandHelp(desc = "Add a song to a playlist", arguments = {"Playlist name", "Song URL/s"})
     @GroupCommand(group = "playlist", name = "add", aliases = {"a"})
     public void _commandAdd(Context ctx) throws YuiException, IOException {
@@ -352,67 +403,73 @@ public class Playlists extends MistyCog {
         if (!(permission.equals(Permission.EDITOR) || permission.equals(Permission.OWNER)))
             throw new CommandException("You don't have permission to add songs to this playlist!");
 
-        // Add the URLS
-        Set<String> toAdd = new HashSet<>();
+        // Add the URLS, keeping the order they were given in. Songs without a known duration are null
+        Map<String, Long> toAdd = new LinkedHashMap<>();
         for (Url url : results.songUrls) {
             String domain = url.getHost().toLowerCase().replace("www.", "");
             if (url.getPath().length() <= 1)
                 throw new CommandException("Invalid URL provided: " + url.getFullUrl());
 
             if (domain.equals("youtu.be")) {
-                toAdd.add("https://www.youtube.com/watch?v=" + url.getPath().substring(1));
+                toAdd.put("https://www.youtube.com/watch?v=" + url.getPath().substring(1), null);
                 continue;
             } else if (domain.equals("youtube.com") && Arrays.asList("/watch", "/playlist").contains(url.getPath().toLowerCase())) {
                 String playlistId = PlaylistUtils.getYoutubePlaylistId(url.getFullUrl());
                 if (playlistId != null) {
                     for (AudioTrack audioTrack : songCache.getPlaylist(ctx.getGuild(), "https://www.youtube.com/playlist?list=" + playlistId))
-                        toAdd.add(audioTrack.getInfo().uri);
+                        toAdd.put(audioTrack.getInfo().uri, SongCache.getDuration(audioTrack));
                     continue;
                 }
                 String videoId = PlaylistUtils.getYoutubeVideoId(url.getFullUrl());
                 if (videoId != null) {
-                    toAdd.add("https://www.youtube.com/watch?v=" + videoId);
+                    toAdd.put("https://www.youtube.com/watch?v=" + videoId, null);
                     continue;
                 }
             } else if (domain.equals("soundcloud.com")) {
                 for (AudioTrack audioTrack : songCache.getPlaylist(ctx.getGuild(), url.getFullUrl())) {
-                    toAdd.add(audioTrack.getInfo().uri);
+                    toAdd.put(audioTrack.getInfo().uri, SongCache.getDuration(audioTrack));
                 }
                 continue;
             }
             throw new CommandException("Invalid URL provided: " + url.getFullUrl());
         }
 
-        // Get the keys and add the songs (duplicates ignored) and compare the size
-        Set<String> songListSet = new HashSet<>(playlist.songList.keySet());
-        songListSet.addAll(toAdd);
-        if (songListSet.size() > playlistSongLimit)
-            throw new CommandException("There's not enough room in the playlist to add `" + toAdd.size() + "` songs!");
+        // Single videos aren't loaded here, so use the cached duration. Songs we haven't cached are filled in once they're loaded
+        Set<String> unknown = new HashSet<>();
+        for (Map.Entry<String, Long> song : toAdd.entrySet()) {
+            if (song.getValue() == null)
+                unknown.add(song.getKey());
+        }
+        Map<String, Long> durations = songCache.getCachedDurations(unknown);
 
-        // Add all the songs to the song list
-        int added = 0;
-        for (String url : toAdd) {
-            if (playlist.songList.containsKey(url))
+        // Skip songs already in the playlist and check there's enough room for the rest
+        Set<String> existing = playlist.findSongs(toAdd.keySet());
+        List<PlaylistSong> songs = new ArrayList<>();
+        for (Map.Entry<String, Long> song : toAdd.entrySet()) {
+            if (existing.contains(song.getKey()))
                 continue;
-
-            playlist.songList.put(url, new PlaylistSong(Instant.now().getEpochSecond(), ctx.getAuthor().getIdLong()));
-            added++;
+            long duration = (song.getValue() == null) ? durations.getOrDefault(song.getKey(), 0L) : song.getValue();
+            songs.add(new PlaylistSong(song.getKey(), duration, Instant.now().getEpochSecond(), ctx.getAuthor().getIdLong()));
         }
+        if (playlist.getSongCount() + songs.size() > playlistSongLimit)
+            throw new CommandException("There's not enough room in the playlist to add `" + songs.size() + "` songs!");
 
         // Confirm to save
-        if (sendConfirmation(ctx, String.format("Are you sure you want to add %s %s to %s?", added, Helper.singularPlural(added, "song", "songs"), playlist.friendlyName))) {
-            playlist.save();
-            ctx.send(
-                    String.format(
-                            "Found %s %s and added %s %s which brings the playlist total to %s %s!",
-                            toAdd.size(), Helper.singularPlural(toAdd.size(), "song", "songs"),
-                            added, Helper.singularPlural(added, "song", "songs"),
-                            playlist.songList.size(), Helper.singularPlural(playlist.songList.size(), "song", "songs")
-                    )
-            );
-        } else {
-            ctx.send("Okay, I won't update the playlist!");
-        }
+        confirm(ctx, String.format("Are you sure you want to add %s %s to %s?", songs.size(), Helper.singularPlural(songs.size(), "song", "songs"), playlist.friendlyName), confirmed -> {
+            if (confirmed) {
+                int addedCount = playlist.addSongs(songs).size();
+                ctx.send(
+                        String.format(
+                                "Found %s %s and added %s %s which brings the playlist total to %s %s!",
+                                toAdd.size(), Helper.singularPlural(toAdd.size(), "song", "songs"),
+                                addedCount, Helper.singularPlural(addedCount, "song", "songs"),
+                                playlist.getSongCount(), Helper.singularPlural(playlist.getSongCount(), "song", "songs")
+                        )
+                );
+            } else {
+                ctx.send("Okay, I won't update the playlist!");
+            }
+        });
     }
 
     @CommandHelp(desc = "Removes a song from a playlist", arguments = {"Playlist name", "Song URL/s"})
@@ -427,20 +484,23 @@ public class Playlists extends MistyCog {
         if (!(permission.equals(Permission.EDITOR) || permission.equals(Permission.OWNER)))
             throw new CommandException("You don't have permission to remove songs from this playlist!");
 
-        Set<String> keySet = playlist.songList.keySet();
+        List<String> toRemove = new ArrayList<>();
+        for (Url url : results.songUrls)
+            toRemove.add(url.getFullUrl());
+        Set<String> found = playlist.findSongs(toRemove);
         for (Url url : results.songUrls) {
-            if (!keySet.contains(url.getFullUrl()))
+            if (!found.contains(url.getFullUrl()))
                 throw new CommandException(String.format("Song %s isn't in playlist %s", url.getFullUrl(), playlist.friendlyName));
         }
 
-        if (sendConfirmation(ctx, String.format("Are you sure you want to remove %s songs from %s?", results.songUrls.size(), playlist.friendlyName))) {
-            for (Url url : results.songUrls)
-                playlist.songList.remove(url.getFullUrl());
-            playlist.save();
-            ctx.send(String.format("Removed %s songs from %s", results.songUrls.size(), playlist.friendlyName));
-        } else {
-            ctx.send("Okay, I won't update the playlist!");
-        }
+        confirm(ctx, String.format("Are you sure you want to remove %s songs from %s?", results.songUrls.size(), playlist.friendlyName), confirmed -> {
+            if (confirmed) {
+                int removed = playlist.removeSongs(toRemove);
+                ctx.send(String.format("Removed %s songs from %s", removed, playlist.friendlyName));
+            } else {
+                ctx.send("Okay, I won't update the playlist!");
+            }
+        });
 
 
     }
@@ -449,7 +509,7 @@ public class Playlists extends MistyCog {
     @GroupCommand(group = "playlist", name = "list", aliases = {"l"})
     public void _commandList(Context ctx) throws YuiException, IOException {
         PlaylistLookupContainer result = PlaylistUtils.getTargetAndName(ctx);
-        List<EmbedBuilder> embedList = new ArrayList<>();
+        Paginator paginator;
 
         if (result.playlistName.isEmpty()) { // List the users playlists
             // Get the list of playlists
@@ -465,23 +525,33 @@ public class Playlists extends MistyCog {
             if (playlists.isEmpty())
                 throw new CommandException(String.format("I found no playlists by the user %s", UserSettings.getName(ctx, result.targetId)));
 
+            // Get all the authors names at once
+            Set<Long> authors = new HashSet<>();
+            authors.add(result.targetId);
+            for (Playlist playlist : playlists)
+                authors.add(playlist.author);
+            Map<Long, String> names = UserSettings.getNames(ctx.getGuild(), authors);
+
+            List<EmbedBuilder> embedList = new ArrayList<>();
             for (List<Playlist> playlistList : ListUtils.partition(playlists, 5)) {
                 EmbedBuilder embedBuilder = new EmbedBuilder();
-                embedBuilder.setTitle(UserSettings.getName(ctx, result.targetId) + " Playlists!");
+                embedBuilder.setTitle(names.get(result.targetId) + " Playlists!");
                 embedBuilder.setDescription("Showing playlists they own and can edit.");
                 embedBuilder.setColor(Helper.randomColor());
 
                 for (Playlist playlist : playlistList) {
                     String builder = playlist.description + "\n" +
-                            "Songs: " + playlist.songList.size() + "\n" +
+                            "Songs: " + playlist.getSongCount() + "\n" +
+                            "Duration: " + AudioUtils.durationToString(playlist.getTotalDuration()) + "\n" +
                             "Plays: " + playlist.plays + "\n" +
-                            "Author: " + UserSettings.getName(ctx, playlist.author) + "\n" +
+                            "Author: " + names.get(playlist.author) + "\n" +
                             "Editors: " + playlist.editors.size() + "\n" +
                             "Role: " + StringUtils.capitalize(playlist.getUserPermission(result.targetId).toString().toLowerCase()) + "\n";
                     embedBuilder.addField(String.format("**%s**", playlist.friendlyName), builder, true);
                 }
                 embedList.add(embedBuilder);
             }
+            paginator = new Paginator(ctx, embedList, 160, true);
 
         } else { // Display the specified playlist
             // Get the playlist
@@ -490,43 +560,53 @@ public class Playlists extends MistyCog {
             if (permission.equals(Permission.NONE))
                 throw new CommandException("I can't find playlist `" + playlist.searchName + "`");
 
-            // Make sure we have URLs to show
-            List<String> urls = new ArrayList<>(playlist.songList.keySet());
-            if (urls.isEmpty())
+            // Make sure we have songs to show
+            if (playlist.getSongCount() == 0)
                 throw new CommandException(String.format("Playlist %s has no songs!", playlist.friendlyName));
 
-            // Create the embeds
+            // Pages are only read and built when they're shown, dates are shown in the viewers timezone
+            int pageSize = 6;
+            UserSettings userSettings = new UserSettings(ctx);
             Color embedColor = Helper.randomColor();
             User user = ctx.getJda().getUserById(playlist.author);
-            for (List<String> urlList : ListUtils.partition(new ArrayList<>(playlist.songList.keySet()), 6)) {
+            paginator = new Paginator(ctx, (playlist.getSongCount() + pageSize - 1) / pageSize, page -> {
+                List<PlaylistSong> songs = playlist.getSongs(page * pageSize, pageSize);
+
+                // Get everyone's names on this page at once
+                Set<Long> users = new HashSet<>();
+                users.add(playlist.author);
+                for (PlaylistSong playlistSong : songs)
+                    users.add(playlistSong.addedBy);
+                Map<Long, String> names = UserSettings.getNames(ctx.getGuild(), users);
+
                 EmbedBuilder embedBuilder = new EmbedBuilder();
                 embedBuilder.setTitle(String.format("**%s**", playlist.friendlyName));
                 embedBuilder.setDescription(playlist.description);
                 embedBuilder.setColor(embedColor);
                 embedBuilder.setThumbnail((playlist.image.isEmpty()) ? null : playlist.image);
-                embedBuilder.setAuthor(UserSettings.getName(ctx, playlist.author), null, (user == null) ? null : user.getEffectiveAvatarUrl());
+                embedBuilder.setAuthor(names.get(playlist.author), null, (user == null) ? null : user.getEffectiveAvatarUrl());
 
-                for (String url : urlList) {
-                    PlaylistSong playlistSong = playlist.songList.get(url);
-                    AudioTrack audioTrack = songCache.getTrack(ctx.getGuild(), url);
+                for (PlaylistSong playlistSong : songs) {
+                    AudioTrack audioTrack = songCache.getTrack(ctx.getGuild(), playlistSong.url);
                     String builder = "Duration: " + AudioUtils.durationToString(audioTrack.getInfo().length) + "\n" +
-                            "Added By: " + UserSettings.getName(ctx, playlistSong.addedBy) + "\n" +
-                            "Added: " + new UserSettings(playlistSong.addedBy).getLongDate(playlistSong.addedTimestamp) + "\n" +
-                            "Url: " + url;
+                            "Added By: " + names.get(playlistSong.addedBy) + "\n" +
+                            "Added: " + userSettings.getLongDate(playlistSong.addedTimestamp) + "\n" +
+                            "Url: " + playlistSong.url;
                     embedBuilder.addField(audioTrack.getInfo().title, builder, true);
                 }
-                embedList.add(embedBuilder);
-            }
+                return embedBuilder;
+            }, 160, true);
         }
 
         // Run the paginator
-        Paginator paginator = new Paginator(ctx, embedList, 160, true);
         paginator.run();
     }
 
     @CommandHelp(desc = "Plays a playlist", arguments = {"Playlist name"})
     @GroupCommand(group = "playlist", name = "play", aliases = {"p"})
     public void _commandPlay(Context ctx) throws CommandException, InterruptedException, AudioException, MistyException, IOException {
+        long requested = System.nanoTime();
+
         // Handle summon checks
         AudioUtils.runSummon(audioGuildManager, ctx);
 
@@ -545,8 +625,7 @@ public class Playlists extends MistyCog {
 
         // Get the audio guild and check the queue has enough room
         AudioGuild audioGuild = audioGuildManager.getAudioGuild(ctx.getGuild().getIdLong());
-        Set<String> songList = playlist.songList.keySet();
-        if (audioGuild.getQueue().size() + songList.size() > AudioGuild.maxSongsInQueue)
+        if (audioGuild.getQueueSize() + playlist.getSongCount() > AudioGuild.maxSongsInQueue)
             throw new CommandException("Can't add playlist as there's not enough room in the queue! Please clear the queue or try again later.");
 
         // Add a play to the counter
@@ -555,18 +634,18 @@ public class Playlists extends MistyCog {
             playlist.save();
         }
 
-        // Add the songs to the queue
-        for (String url : songList) {
-            AudioTrack audioTrack = songCache.getTrack(ctx.getGuild(), url);
-            audioGuild.addToQueue(new TrackRequest(audioTrack, ctx.getAuthor().getIdLong()));
-        }
-
-        // Play the music
-        if (audioGuild.getAudioPlayer().getPlayingTrack() == null)
-            audioGuild.play();
+        // Queue the songs as URLs, the AudioGuild loads each one just before it's played
+        List<TrackRequest> requests = new ArrayList<>();
+        for (PlaylistSong playlistSong : playlist.getSongs(0, playlist.getSongCount()))
+            requests.add(new TrackRequest(playlistSong.url, playlistSong.duration, ctx.getAuthor().getIdLong(), songCache));
+        audioGuild.addAllToQueue(requests);
+        audioGuild.playIfIdle(requested);
 
         // Inform the invoker
-        ctx.send(String.format("Added `%s` %s from the `%s` playlist to the queue!", songList.size(), Helper.singularPlural(songList.size(), "song", "songs"), playlist.friendlyName));
+        ctx.send(String.format(
+                "Added `%s` %s from the `%s` playlist to the queue!",
+                requests.size(), Helper.singularPlural(requests.size(), "song", "songs"), playlist.friendlyName
+        ));
     }
 
 
@@ -3,16 +3,13 @@ package sh.niall.misty.cogs;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.ChannelType;
-import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.Member;
-import net.dv8tion.jda.api.entities.TextChannel;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import sh.niall.misty.Misty;
 import sh.niall.misty.utils.misty.MistyCog;
 import sh.niall.misty.utils.reminders.HumanDateConverter;
+import sh.niall.misty.utils.reminders.ReminderScheduler;
 import sh.niall.misty.utils.reminders.RemindersPaginator;
 import sh.niall.misty.utils.settings.UserSettings;
 import sh.niall.misty.utils.ui.Helper;
@@ -22,19 +19,17 @@ import sh.niall.yui.cogs.commands.context.Context;
 import sh.niall.yui.cogs.commands.help.annotations.CommandHelp;
 import sh.niall.yui.exceptions.CommandException;
 import sh.niall.yui.exceptions.YuiException;
-import sh.niall.yui.tasks.interfaces.Loop;
 
 import java.awt.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class Reminders extends MistyCog {
 
     private MongoCollection<Document> db = Misty.database.getCollection("reminders");
+    private ReminderScheduler scheduler = new ReminderScheduler(db);
 
     public Reminders() {
         this.cogDescription = "Everything to do with Reminders";
@@ -65,23 +60,26 @@ public class Reminders extends MistyCog {
         embedBuilder.addField("Duration until:", durationToString(duration), false);
         embedBuilder.setFooter(String.format("Date/Time is shown in your set timezone (%s)", userSettings.timezone.getId()));
 
-        // Ignore if they change their mind
-        if (!sendConfirmation(ctx, embedBuilder.build())) {
-            ctx.send("Okay! I won't remind you.");
-            return;
-        }
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            // Ignore if they change their mind
+            if (!confirmed) {
+                ctx.send("Okay! I won't remind you.");
+                return;
+            }
 
-        // Insert to the db
-        Document document = new Document();
-        document.put("author", ctx.getAuthor().getIdLong());
-        document.put("timestamp", remindAt);
-        document.put("url", ctx.getMessage().getJumpUrl());
-        if (ctx.getChannel().getType() != ChannelType.PRIVATE) {
-            document.put("guild", ctx.getGuild().getIdLong());
-            document.put("channel", ctx.getChannel().getIdLong());
-        }
-        db.insertOne(document);
-        ctx.send("Ok, I'll remind you!");
+            // Insert to the db
+            Document document = new Document();
+            document.put("author", ctx.getAuthor().getIdLong());
+            document.put("timestamp", remindAt.toEpochSecond());
+            document.put("url", ctx.getMessage().getJumpUrl());
+            if (ctx.getChannel().getType() != ChannelType.PRIVATE) {
+                document.put("guild", ctx.getGuild().getIdLong());
+                document.put("channel", ctx.getChannel().getIdLong());
+            }
+            db.insertOne(document);
+            scheduler.schedule(document);
+            ctx.send("Ok, I'll remind you!");
+        });
     }
 
     @CommandHelp(desc = "View and Delete your reminders")
@@ -113,53 +111,6 @@ public class Reminders extends MistyCog {
         paginator.run();
     }
 
-    @Loop(seconds = 10)
-    public void checkLoop() {
-        for (Document document : db.find(Filters.lte("timestamp", Instant.now().getEpochSecond()))) {
-            // Build the message
-            EmbedBuilder embedBuilder = new EmbedBuilder();
-            embedBuilder.setTitle("Reminder!");
-            embedBuilder.setDescription("I'm reminding you about this message:");
-            embedBuilder.addField("Message link:", document.getString("url"), false);
-            embedBuilder.setColor(Helper.randomColor());
-            MessageBuilder messageBuilder = new MessageBuilder();
-            messageBuilder.setContent(String.format("<@%s>", document.getLong("author")));
-            messageBuilder.setEmbed(embedBuilder.build());
-
-            // Try to send to the Guild Channel first
-            if (document.containsKey("guild")) {
-                try {
-                    // Get the Guild
-                    Guild guild = getYui().getJda().getGuildById(document.getLong("guild"));
-                    if (guild == null)
-                        throw new Exception();
-
-                    // Get the channel
-                    TextChannel channel = guild.getTextChannelById(document.getLong("channel"));
-                    if (channel == null)
-                        throw new Exception();
-
-                    // Get the member list and check our user is there
-                    List<Member> memberList = new ArrayList<>(channel.getMembers());
-                    memberList.removeIf(member -> member.getIdLong() != document.getLong("author"));
-                    if (memberList.isEmpty())
-                        throw new Exception();
-
-                    // Send it and delete
-                    channel.sendMessage(messageBuilder.build()).complete();
-                    deleteDoc(document);
-                    return;
-                } catch (Exception ignored) {
-                }
-            }
-            try {
-                getYui().getJda().getUserById(document.getLong("author")).openPrivateChannel().complete().sendMessage(messageBuilder.build());
-            } catch (Exception ignored) {
-                deleteDoc(document);
-            }
-        }
-    }
-
     /**
      * Deletes a document from the database
      *
@@ -167,6 +118,7 @@ public class Reminders extends MistyCog {
      */
     private void deleteDoc(Document document) {
         db.deleteOne(Filters.eq("_id", document.get("_id", ObjectId.class)));
+        scheduler.cancel(document.get("_id", ObjectId.class));
     }
 
     /**
@@ -187,11 +139,11 @@ public class Reminders extends MistyCog {
     /**
      * Called by the paginator to prompt the user if they want to delete a reminder and delete it if so.
      *
-     * @param ctx      The current context
-     * @param document The document to delete
-     * @return If the delete was successful
+     * @param ctx       The current context
+     * @param document  The document to delete
+     * @param onDeleted Called once the reminder is deleted
      */
-    public boolean attemptDelete(Context ctx, Document document) {
+    public void attemptDelete(Context ctx, Document document, Runnable onDeleted) {
         //
         LocalDateTime remindDT = LocalDateTime.ofEpochSecond(document.getLong("timestamp"), 0, ZoneOffset.UTC);
 
@@ -206,14 +158,11 @@ public class Reminders extends MistyCog {
         embedBuilder.setColor(Color.YELLOW);
 
         // Prompt if they want to delete. If anything but a yes, just ignore the delete reaction
-        try {
-            if (sendConfirmation(ctx, embedBuilder.build())) {
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (confirmed) {
                 deleteDoc(document);
-                return true;
+                onDeleted.run();
             }
-            return false;
-        } catch (Exception ignored) {
-            return false;
-        }
+        });
     }
 }
@@ -140,14 +140,16 @@ public class Social extends MistyCog {
             embedBuilder.setDescription("Are you sure you want to update your bio?");
             embedBuilder.addField("Old Bio:", document.getString("bio"), false);
             embedBuilder.addField("New Bio:", newBio, false);
-            if (!sendConfirmation(ctx, embedBuilder.build())) {
-                ctx.send("I won't update your bio!");
-                return;
-            }
+            confirm(ctx, embedBuilder.build(), confirmed -> {
+                if (!confirmed) {
+                    ctx.send("I won't update your bio!");
+                    return;
+                }
 
-            // Update the bio
-            db.updateOne(Filters.eq("_id", ctx.getAuthor().getIdLong()), new Document("$set", updatedDocument));
-            ctx.send("Bio Updated!");
+                // Update the bio
+                db.updateOne(Filters.eq("_id", ctx.getAuthor().getIdLong()), new Document("$set", updatedDocument));
+                ctx.send("Bio Updated!");
+            });
         }
     }
 
@@ -164,13 +166,15 @@ public class Social extends MistyCog {
         embedBuilder.setTitle("Bio Clear!");
         embedBuilder.setDescription("Are you sure you want to delete your bio?");
         embedBuilder.addField("Current Bio:", document.getString("bio"), false);
-        if (!sendConfirmation(ctx, embedBuilder.build())) {
-            ctx.send("I won't delete your bio!");
-            return;
-        }
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (!confirmed) {
+                ctx.send("I won't delete your bio!");
+                return;
+            }
 
-        // Delete it!
-        db.deleteOne(Filters.eq("_id", ctx.getAuthor().getIdLong()));
-        ctx.send("Bio deleted!");
+            // Delete it!
+            db.deleteOne(Filters.eq("_id", ctx.getAuthor().getIdLong()));
+            ctx.send("Bio deleted!");
+        });
     }
 }
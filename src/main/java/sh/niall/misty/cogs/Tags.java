@@ -13,6 +13,7 @@ import sh.niall.misty.utils.settings.UserSettings;
 import sh.niall.misty.utils.tags.Tag;
 import sh.niall.misty.utils.ui.Helper;
 import sh.niall.misty.utils.ui.Menu;
+import sh.niall.misty.utils.ui.interactions.Confirmation;
 import sh.niall.misty.utils.ui.paginator.Paginator;
 import sh.niall.yui.cogs.commands.annotations.Group;
 import sh.niall.yui.cogs.commands.annotations.GroupCommand;
@@ -26,7 +27,7 @@ import sh.niall.yui.exceptions.YuiException;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 
 public class Tags extends MistyCog {
 
@@ -84,16 +85,16 @@ public class Tags extends MistyCog {
 
         // Get the users next message
         ctx.send("What would you like the content of the tag to be?");
-        String body = getNextMessage(ctx);
+        whenAnswered(ctx, getNextMessage(ctx), body -> {
+            // Validate the body
+            Tag.validateBody(body);
 
-        // Validate the body
-        Tag.validateBody(body);
+            // Create the tag
+            new Tag(db, ctx.getGuild().getIdLong(), ctx.getAuthor().getIdLong(), friendlyName, body).save();
 
-        // Create the tag
-        new Tag(db, ctx.getGuild().getIdLong(), ctx.getAuthor().getIdLong(), friendlyName, body).save();
-
-        // Inform the invoker
-        ctx.send(String.format("Tag `%s` created!", friendlyName));
+            // Inform the invoker
+            ctx.send(String.format("Tag `%s` created!", friendlyName));
+        });
     }
 
     @CommandHelp(desc = "Delete a tag!", arguments = {"Tag Name"})
@@ -121,10 +122,12 @@ public class Tags extends MistyCog {
         embedBuilder.addField("Uses: ", String.valueOf(tag.uses), true);
 
         // Delete if confirmed
-        if (sendConfirmation(ctx, embedBuilder.build()))
-            ctx.send(String.format("Tag `%s` deleted!", tag.delete().friendlyName));
-        else
-            ctx.send(String.format("Okay! I won't delete tag %s", tag.friendlyName));
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (confirmed)
+                ctx.send(String.format("Tag `%s` deleted!", tag.delete().friendlyName));
+            else
+                ctx.send(String.format("Okay! I won't delete tag %s", tag.friendlyName));
+        });
     }
 
     @CommandHelp(desc = "Edit a tag!", arguments = {"Tag Name"})
@@ -142,29 +145,6 @@ public class Tags extends MistyCog {
         if (ctx.getAuthor().getIdLong() != tag.author)
             throw new CommandException("You can't edit this tag as you don't own it!");
 
-        int menuOption = Menu.showMenu(
-                ctx,
-                String.format("What would you like to edit about tag %s?", tag.friendlyName),
-                new String[]{
-                        "Edit Tag Name",
-                        "Edit Tag Content",
-                        "Change Ownership"
-                }
-        );
-
-        // Handle the prompt first since all the logic is put in a loop
-        switch (menuOption) {
-            case 1:
-                ctx.send("What would you like to rename the tag to?");
-                break;
-            case 2:
-                ctx.send("What would you like the tag content to be?");
-                break;
-            case 3:
-                ctx.send("Who would you like the new owner to be?");
-                break;
-        }
-
         // Setup the update information
         EmbedBuilder embedBuilder = new EmbedBuilder()
                 .setTitle("Edit Conformation")
@@ -172,94 +152,150 @@ public class Tags extends MistyCog {
                 .setColor(Color.YELLOW)
                 .setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
 
+        whenAnswered(ctx, Menu.showMenu(
+                ctx,
+                String.format("What would you like to edit about tag %s?", tag.friendlyName),
+                new String[]{
+                        "Edit Tag Name",
+                        "Edit Tag Content",
+                        "Change Ownership"
+                }
+        ), menuOption -> {
+            // Handle the prompt, then listen for their answer
+            switch (menuOption) {
+                case 1:
+                    ctx.send("What would you like to rename the tag to?");
+                    break;
+                case 2:
+                    ctx.send("What would you like the tag content to be?");
+                    break;
+                case 3:
+                    ctx.send("Who would you like the new owner to be?");
+                    break;
+            }
+            awaitEdit(ctx, tag, embedBuilder, menuOption, 1);
+        });
+    }
 
-        // Using Atomic to keep track of how many iterations
-        AtomicInteger attempts = new AtomicInteger(0);
-        inputLoop:
-        while (true) {
-            if (attempts.incrementAndGet() == 4)
-                throw new CommandException("Exiting edit, you've failed too many attempts.");
-
-            // All need a new message, so listen for it
-            String newMessage = getNextMessage(ctx);
+    /**
+     * Listens for the users answer to an edit prompt, asking again if it's invalid
+     *
+     * @param ctx          The command context
+     * @param tag          The tag being edited
+     * @param embedBuilder The confirmation embed, describing the changes
+     * @param menuOption   The edit they picked
+     * @param attempt      Which attempt this is
+     */
+    private void awaitEdit(Context ctx, Tag tag, EmbedBuilder embedBuilder, int menuOption, int attempt) {
+        whenAnswered(ctx, getNextMessage(ctx), newMessage -> {
             if (newMessage == null)
                 throw new CommandException("Exiting edit, you ran out of time!");
 
             try {
-                switch (menuOption) {
-                    case 1:
-                        String newSearchName = Tag.generateSearchName(newMessage);
-                        if (newSearchName.equals(tag.searchName))
-                            throw new CommandException("Old and new tag name is the same!");
-                        Tag.validateName(ctx, newSearchName);
-                        if (db.find(Filters.and(Filters.eq("guild", ctx.getGuild().getIdLong()), Filters.eq("searchName", newSearchName))).first() != null)
-                            throw new CommandException(String.format("Tag %s already exists!", friendlyName));
-                        embedBuilder.addField("Old Name:", tag.friendlyName, true);
-                        embedBuilder.addField("New Name:", newMessage, true);
-                        tag.friendlyName = newMessage;
-                        tag.searchName = newSearchName;
-                        break inputLoop;
-                    case 2:
-                        if (newMessage.equals(tag.body))
-                            throw new CommandException("Old and new tag content is the same!");
-                        Tag.validateBody(newMessage);
-                        embedBuilder.addField("Old Content:", tag.body, false);
-                        embedBuilder.addField("New Content:", newMessage, false);
-                        tag.body = newMessage;
-                        break inputLoop;
-                    case 3:
-                        String newOwner = newMessage.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
-                        if (!newOwner.matches("\\d+"))
-                            throw new CommandException("Invalid user! Please provide a valid user to change ownership to.");
-
-                        long newOwnerLong = Long.parseLong(newOwner);
-                        if (ctx.getGuild().getMemberById(newOwnerLong) == null)
-                            throw new CommandException("I don't know who that is! Please make sure the new owner is in this server.");
-
-                        if (ctx.getJda().getUserById(newOwnerLong).isBot())
-                            throw new CommandException("You can't transfer a tag to a bot!");
-
-                        if (this.db.count(Filters.and(Filters.eq("author", ctx.getAuthor().getIdLong()), Filters.eq("guild", ctx.getGuild().getIdLong()))) >= maxTagsPerMember)
-                            throw new CommandException("They already have the maximum amount of tags in this guild!");
-
-                        embedBuilder.addField("New Owner:", UserSettings.getName(ctx, newOwnerLong), false);
-                        embedBuilder.addField("WARNING:", "You will lose ownership of this tag!", false);
-                        embedBuilder.setColor(Color.RED);
-                        tag.author = newOwnerLong;
-                        break inputLoop;
-                }
+                applyEdit(ctx, tag, embedBuilder, menuOption, newMessage);
             } catch (CommandException error) {
+                if (attempt >= 3)
+                    throw new CommandException("Exiting edit, you've failed too many attempts.");
                 ctx.send("That won't work, please try again!\n`" + error.getMessage() + "`");
+                awaitEdit(ctx, tag, embedBuilder, menuOption, attempt + 1);
+                return;
             }
-        }
 
-        if (menuOption == 3) { // Validate new ownership with the new owner
+            if (menuOption != 3) {
+                confirmEdit(ctx, tag, embedBuilder);
+                return;
+            }
+
+            // Validate new ownership with the new owner
             EmbedBuilder targetEmbed = new EmbedBuilder()
                     .setTitle("Tag Transfer")
                     .setDescription(String.format("Would you like to take ownership of the `%s` tag?", tag.friendlyName))
                     .setColor(Color.YELLOW)
                     .setAuthor(UserSettings.getName(ctx, tag.author), null, ctx.getJda().getUserById(tag.author).getEffectiveAvatarUrl());
+            CompletableFuture<Boolean> transfer = Confirmation.ask(ctx.getChannel(), targetEmbed.build(), tag.author);
+            whenAnswered(ctx, transfer.exceptionally(error -> null), accepted -> {
+                if (accepted == null)
+                    throw new CommandException("Transfer canceled! New owner took too long to respond.");
+                if (!accepted)
+                    throw new CommandException("Transfer canceled! The new owner declined!");
+                confirmEdit(ctx, tag, embedBuilder);
+            });
+        });
+    }
 
-            boolean targetDecision;
-            try {
-                targetDecision = sendConfirmation(ctx, targetEmbed.build(), tag.author);
-            } catch (CommandException error) {
-                ctx.send("Transfer canceled! New owner took too long to respond.");
+    /**
+     * Applies the users answer to the tag and describes the change in the confirmation embed
+     *
+     * @param ctx          The command context
+     * @param tag          The tag being edited
+     * @param embedBuilder The confirmation embed
+     * @param menuOption   The edit they picked
+     * @param newMessage   Their answer
+     * @throws CommandException Thrown if their answer is invalid
+     */
+    private void applyEdit(Context ctx, Tag tag, EmbedBuilder embedBuilder, int menuOption, String newMessage) throws CommandException {
+        switch (menuOption) {
+            case 1:
+                String newSearchName = Tag.generateSearchName(newMessage);
+                if (newSearchName.equals(tag.searchName))
+                    throw new CommandException("Old and new tag name is the same!");
+                Tag.validateName(ctx, newSearchName);
+                if (db.find(Filters.and(Filters.eq("guild", ctx.getGuild().getIdLong()), Filters.eq("searchName", newSearchName))).first() != null)
+                    throw new CommandException(String.format("Tag %s already exists!", newMessage));
+                embedBuilder.addField("Old Name:", tag.friendlyName, true);
+                embedBuilder.addField("New Name:", newMessage, true);
+                tag.friendlyName = newMessage;
+                tag.searchName = newSearchName;
                 return;
-            }
-            if (!targetDecision)
-                throw new CommandException("Transfer canceled! The new owner declined!");
-        }
+            case 2:
+                if (newMessage.equals(tag.body))
+                    throw new CommandException("Old and new tag content is the same!");
+                Tag.validateBody(newMessage);
+                embedBuilder.addField("Old Content:", tag.body, false);
+                embedBuilder.addField("New Content:", newMessage, false);
+                tag.body = newMessage;
+                return;
+            case 3:
+                String newOwner = newMessage.split(" ")[0].replace("<@", "").replace("!", "").replace(">", "");
+                if (!newOwner.matches("\\d+"))
+                    throw new CommandException("Invalid user! Please provide a valid user to change ownership to.");
+
+                long newOwnerLong = Long.parseLong(newOwner);
+                if (ctx.getGuild().getMemberById(newOwnerLong) == null)
+                    throw new CommandException("I don't know who that is! Please make sure the new owner is in this server.");
+
+                if (ctx.getJda().getUserById(newOwnerLong).isBot())
+                    throw new CommandException("You can't transfer a tag to a bot!");
+
+                if (this.db.count(Filters.and(Filters.eq("author", ctx.getAuthor().getIdLong()), Filters.eq("guild", ctx.getGuild().getIdLong()))) >= maxTagsPerMember)
+                    throw new CommandException("They already have the maximum amount of tags in this guild!");
 
-        // Confirm and edit
-        if (sendConfirmation(ctx, embedBuilder.build())) {
-            tag.save();
-            ctx.send("Tag edited!");
-        } else {
-            ctx.send("Tag edit canceled!");
+                embedBuilder.addField("New Owner:", UserSettings.getName(ctx, newOwnerLong), false);
+                embedBuilder.addField("WARNING:", "You will lose ownership of this tag!", false);
+                embedBuilder.setColor(Color.RED);
+                tag.author = newOwnerLong;
+                return;
         }
     }
 
+    /**
+     * Asks the user to confirm the edit, saving the tag if they do
+     *
+     * @param ctx          The command context
+     * @param tag          The edited tag
+     * @param embedBuilder The confirmation embed
+     */
+    private void confirmEdit(Context ctx, Tag tag, EmbedBuilder embedBuilder) {
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (confirmed) {
+                tag.save();
+                ctx.send("Tag edited!");
+            } else {
+                ctx.send("Tag edit canceled!");
+            }
+        });
+    }
+
     @CommandHelp(desc = "Get a tags information", arguments = {"Tag Name"})
     @GroupCommand(group = "tag", name = "info", aliases = {"i"})
     public void _commandInfo(Context ctx) throws CommandException {
@@ -311,14 +347,14 @@ public class Tags extends MistyCog {
         for (Document document : db.find(Filters.or(Filters.eq("author", targetId), Filters.eq("guild", ctx.getGuild().getIdLong())))) {
             tags.add(new Tag(db, document));
         }
+        String targetName = UserSettings.getName(ctx, targetId);
         if (tags.isEmpty())
-            throw new CommandException(String.format("%s has no tags!", UserSettings.getName(ctx, targetId)));
+            throw new CommandException(String.format("%s has no tags!", targetName));
 
         // Getting information for the pages
         List<EmbedBuilder> embedBuilderList = new ArrayList<>();
         EmbedBuilder embedBuilderMaster = new EmbedBuilder();
         User targetUser = ctx.getJda().getUserById(targetId);
-        String targetName = UserSettings.getName(ctx, targetId);
         embedBuilderMaster.setTitle(String.format("%s's tags!", targetName));
         embedBuilderMaster.setAuthor(targetName, null, (targetUser != null) ? targetUser.getEffectiveAvatarUrl() : null);
         embedBuilderMaster.setColor(Helper.randomColor());
@@ -16,7 +16,6 @@ import sh.niall.yui.exceptions.YuiException;
 
 import java.awt.*;
 import java.time.ZoneId;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class Utilities extends MistyCog {
 
@@ -69,7 +68,7 @@ public class Utilities extends MistyCog {
     @CommandHelp(desc = "Get the link to invite me to your server")
     @Command(name = "invite")
     public void _commandInvite(Context ctx) {
-        ctx.send(String.format(inviteLink, getYui().getJda().getSelfUser().getId()));
+        ctx.send(String.format(inviteLink, ctx.getJda().getSelfUser().getId()));
     }
 
     @CommandHelp(desc = "Change your Misty settings")
@@ -77,7 +76,13 @@ public class Utilities extends MistyCog {
     public void _commandSettings(Context ctx) throws YuiException {
         UserSettings userSettings = new UserSettings(ctx.getAuthor().getIdLong());
 
-        int menuOption = Menu.showMenu(
+        EmbedBuilder embedBuilder = new EmbedBuilder();
+        embedBuilder.setTitle("User Settings Change");
+        embedBuilder.setDescription("Are you sure you want to change the following setting");
+        embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
+        embedBuilder.setColor(Color.YELLOW);
+
+        whenAnswered(ctx, Menu.showMenu(
                 ctx,
                 "What would you like to edit?",
                 new String[]{
@@ -85,39 +90,47 @@ public class Utilities extends MistyCog {
                         "Change Language",
                         "Set Preferred Name"
                 }
-        );
-
-        EmbedBuilder embedBuilder = new EmbedBuilder();
-        embedBuilder.setTitle("User Settings Change");
-        embedBuilder.setDescription("Are you sure you want to change the following setting");
-        embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
-        embedBuilder.setColor(Color.YELLOW);
+        ), menuOption -> {
+            if (menuOption == 1) {
+                whenAnswered(ctx, Menu.showMenu(ctx, "Which is your preferred timezone?", UserSettings.timezones), timezoneOption -> {
+                    String selection = UserSettings.timezones[timezoneOption - 1].split(" ")[0];
+                    embedBuilder.addField("Old Timezone:", userSettings.timezone.getId(), false);
+                    embedBuilder.addField("New Timezone:", selection, false);
+                    userSettings.timezone = ZoneId.of(selection);
+                    confirmSettings(ctx, userSettings, embedBuilder);
+                });
+            } else if (menuOption == 2) {
+                whenAnswered(ctx, Menu.showMenu(ctx, "What language would you like me to talk to you in?", UserSettings.languages), languageOption -> {
+                    int languageSelection = languageOption - 1;
+                    String selection = UserSettings.languages[languageSelection].split(" ")[0];
+                    embedBuilder.addField("Old Language:", UserSettings.languages[userSettings.language.getId()], false);
+                    embedBuilder.addField("New Language:", UserSettings.languages[languageSelection], false);
+                    userSettings.language = Languages.valueOf(selection);
+                    confirmSettings(ctx, userSettings, embedBuilder);
+                });
+            } else {
+                ctx.send("What would you like me to call you?\n(Type `clear` to remove your custom name)");
+                awaitName(ctx, userSettings, embedBuilder, 1);
+            }
+        });
+    }
 
-        if (menuOption == 1) {
-            int timezoneSelection = Menu.showMenu(ctx, "Which is your preferred timezone?", UserSettings.timezones) - 1;
-            String selection = UserSettings.timezones[timezoneSelection].split(" ")[0];
-            embedBuilder.addField("Old Timezone:", userSettings.timezone.getId(), false);
-            embedBuilder.addField("New Timezone:", selection, false);
-            userSettings.timezone = ZoneId.of(selection);
-        } else if (menuOption == 2) {
-            int languageSelection = Menu.showMenu(ctx, "What language would you like me to talk to you in?", UserSettings.languages) - 1;
-            String selection = UserSettings.languages[languageSelection].split(" ")[0];
-            embedBuilder.addField("Old Language:", UserSettings.languages[userSettings.language.getId()], false);
-            embedBuilder.addField("New Language:", UserSettings.languages[languageSelection], false);
-            userSettings.language = Languages.valueOf(selection);
-        } else {
-            ctx.send("What would you like me to call you?\n(Type `clear` to remove your custom name)");
-            AtomicInteger attempts = new AtomicInteger();
-            String newName;
-            while (true) {
-                if (attempts.incrementAndGet() >= 4)
-                    throw new CommandException("Exiting name edit due because of too many failed attempts.");
-
-                newName = getNextMessage(ctx);
-                if (newName.toLowerCase().equals("clear")) {
-                    newName = "";
-                    break;
-                }
+    /**
+     * Listens for the users new preferred name, asking again if it's invalid
+     *
+     * @param ctx          The command context
+     * @param userSettings The settings being edited
+     * @param embedBuilder The confirmation embed
+     * @param attempt      Which attempt this is
+     */
+    private void awaitName(Context ctx, UserSettings userSettings, EmbedBuilder embedBuilder, int attempt) {
+        whenAnswered(ctx, getNextMessage(ctx), newName -> {
+            if (newName == null)
+                throw new CommandException("Exiting name edit, you ran out of time!");
+
+            if (newName.toLowerCase().equals("clear")) {
+                newName = "";
+            } else {
                 try {
                     int length = newName.length();
                     if (length < 2 || 40 < length)
@@ -129,23 +142,37 @@ public class Utilities extends MistyCog {
                     if (!newName.equals(newName.replaceAll(" +", " ")))
                         throw new CommandException("Names can't have multiple spaces!");
                 } catch (CommandException error) {
+                    if (attempt >= 3)
+                        throw new CommandException("Exiting name edit due because of too many failed attempts.");
                     ctx.send("That won't work, please try again.\n`" + error.getMessage() + "`");
-                    continue;
+                    awaitName(ctx, userSettings, embedBuilder, attempt + 1);
+                    return;
                 }
-                break;
             }
 
             embedBuilder.addField("Old Preferred Name:", UserSettings.getName(ctx), false);
             embedBuilder.addField("New Preferred Name:", newName, false);
             userSettings.preferredName = newName;
-        }
+            confirmSettings(ctx, userSettings, embedBuilder);
+        });
+    }
 
-        if (sendConfirmation(ctx, embedBuilder.build())) {
-            userSettings.save();
-            ctx.send("Settings edited!");
-        } else {
-            ctx.send("Ok I won't edit any settings.");
-        }
+    /**
+     * Asks the user to confirm the settings change, saving it if they do
+     *
+     * @param ctx          The command context
+     * @param userSettings The edited settings
+     * @param embedBuilder The confirmation embed
+     */
+    private void confirmSettings(Context ctx, UserSettings userSettings, EmbedBuilder embedBuilder) {
+        confirm(ctx, embedBuilder.build(), confirmed -> {
+            if (confirmed) {
+                userSettings.save();
+                ctx.send("Settings edited!");
+            } else {
+                ctx.send("Ok I won't edit any settings.");
+            }
+        });
     }
 
 }
@@ -0,0 +1,10 @@
+package sh.niall.misty.errors;
+
+/*
+Thrown when Lava Player says a query has no results or can't be loaded, rather than us giving up on waiting for it
+ */
+public class LoadFailedException extends AudioException {
+    public LoadFailedException(String message) {
+        super(message);
+    }
+}
@@ -12,6 +12,8 @@ import net.dv8tion.jda.api.entities.GuildVoiceState;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.MessageChannel;
 import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sh.niall.misty.Misty;
 import sh.niall.misty.errors.AudioException;
 import sh.niall.misty.utils.audio.helpers.SendHandler;
@@ -20,7 +22,20 @@ import sh.niall.yui.Yui;
 import sh.niall.yui.exceptions.CommandException;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Audio Guild
@@ -34,16 +49,30 @@ public class AudioGuild extends AudioEventAdapter {
     private boolean loopSong = false;
     private boolean shuffling = false;
     private long lastTextChannel = 0;
-    private TrackRequest currentSong = null;
-    private final List<TrackRequest> trackQueue = new ArrayList<>();
+    private volatile TrackRequest currentSong = null;
+    private final AtomicReference<TrackRequest> pendingSong = new AtomicReference<>(); // Song waiting to finish loading
+    private final TrackQueue trackQueue = new TrackQueue(); // Guarded by itself, tracks can be queued from loader threads
     private Yui yui;
 
     // Audio Player
-    private AudioPlayer audioPlayer;
+    private volatile AudioPlayer audioPlayer;
+    private AudioPlayer standbyPlayer; // Loads the next song before the current one ends, guarded by preloadLock
+    private TrackRequest preparedSong; // The song playing paused on the standby player, guarded by preloadLock
+    private ScheduledFuture<?> preloadTask;
+    private final Object preloadLock = new Object();
+    private AudioPlayerManager audioPlayerManager;
     private SendHandler sendHandler;
+    private final AudioStats audioStats = AudioStats.forGuild();
+    private final Logger logger = LoggerFactory.getLogger(AudioGuild.class);
 
     // Static
-    public static int maxSongsInQueue = 300;
+    public static int maxSongsInQueue = 1000;
+    public static int queueLookahead = 2; // How many upcoming songs are decoded or loaded ahead of time
+    public static int preloadSeconds = 5; // How long before a song ends the next song starts buffering, 0 to disable
+    public static int maxTranscodingGuilds = -1; // How many guilds can play below 100% volume at once, -1 for no limit
+    private static final Set<Long> transcodingGuilds = new HashSet<>(); // Guarded by itself
+    private static final Map<Long, AudioGuild> suspendedGuilds = new LinkedHashMap<>(); // Waiting for a slot, guarded by transcodingGuilds
+    private static final ScheduledExecutorService preloadScheduler = Executors.newSingleThreadScheduledExecutor();
 
     public AudioGuild(Yui yui, long guildId, AudioPlayerManager audioPlayerManager) {
         // Setup some basics
@@ -52,9 +81,10 @@ public class AudioGuild extends AudioEventAdapter {
         loadFromDB();
 
         // Create the audio player
+        this.audioPlayerManager = audioPlayerManager;
         this.audioPlayer = audioPlayerManager.createPlayer();
         this.audioPlayer.addListener(this);
-        this.sendHandler = new SendHandler(this.audioPlayer);
+        this.sendHandler = new SendHandler(this.audioPlayer, audioStats);
     }
 
     // Getters and Setters
@@ -62,15 +92,44 @@ public class AudioGuild extends AudioEventAdapter {
         return currentVolume;
     }
 
+    /**
+     * Changes the volume. A guild only takes a transcoding slot while a song is playing, if there's no room for this
+     * guild the change is refused instead of playing at a different volume than was asked for.
+     *
+     * @param currentVolume The volume between 0-100
+     * @throws AudioException Thrown if the volume isn't valid or too many guilds are already changing their volume
+     */
     public void setVolume(int currentVolume) throws AudioException {
         if (currentVolume < 0 || 100 < currentVolume)
             throw new AudioException("Volume must be between 0-100!");
 
+        // Only a playing song needs a slot straight away, otherwise it's claimed when the next song starts
+        AudioPlayer audioPlayer = this.audioPlayer;
+        boolean playing = audioPlayer.getPlayingTrack() != null && !audioPlayer.isPaused();
+        if (playing ? !claimTranscoding(currentVolume) : !canTranscode(currentVolume))
+            throw new AudioException("Too many servers are changing their volume right now, please try again later or keep the volume at 100%.");
+
         this.currentVolume = currentVolume;
-        audioPlayer.setVolume(this.currentVolume);
+        if (playing)
+            audioPlayer.setVolume(currentVolume);
         saveToDB();
     }
 
+    public long getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * Gets how many guilds are currently playing below 100% volume
+     *
+     * @return The amount of guilds transcoding
+     */
+    public static int getTranscodingGuildCount() {
+        synchronized (transcodingGuilds) {
+            return transcodingGuilds.size();
+        }
+    }
+
     public boolean isSongLooping() {
         return loopSong;
     }
@@ -111,24 +170,64 @@ public class AudioGuild extends AudioEventAdapter {
         return audioPlayer;
     }
 
+    public AudioStats getAudioStats() {
+        return audioStats;
+    }
+
+    /**
+     * Adds songs to the end of the queue, either all of them are added or none are
+     *
+     * @param trackRequests The songs to add to the queue
+     * @throws CommandException Thrown if there isn't enough room in the queue
+     */
+    public void addAllToQueue(List<TrackRequest> trackRequests) throws CommandException {
+        synchronized (trackQueue) {
+            if (trackQueue.size() + trackRequests.size() > maxSongsInQueue)
+                throw new CommandException("Can't add the songs as there's not enough room in the queue! Please clear the queue or try again later.");
+            for (TrackRequest trackRequest : trackRequests)
+                trackQueue.add(trackRequest);
+        }
+    }
+
     /**
      * Adds a new song to the end of the queue
      *
      * @param trackRequest The song to add to the queue
      */
     public void addToQueue(TrackRequest trackRequest) throws CommandException {
-        if (trackQueue.size() == maxSongsInQueue)
-            throw new CommandException("The queue is currently full! Please try again after a few songs");
-        trackQueue.add(trackRequest);
+        boolean compact;
+        synchronized (trackQueue) {
+            if (trackQueue.size() >= maxSongsInQueue)
+                throw new CommandException("The queue is currently full! Please try again after a few songs");
+            trackQueue.add(trackRequest);
+            compact = trackQueue.size() > queueLookahead;
+        }
+
+        // Songs further back only need the encoded track until they're close to playing
+        if (compact)
+            trackRequest.compact(audioPlayerManager);
     }
 
     /**
-     * Gets the current queue
+     * Gets the current queue. The list can't be changed and won't change if the queue does.
      *
      * @return The queue of tracks
      */
     public List<TrackRequest> getQueue() {
-        return new ArrayList<>(trackQueue);
+        synchronized (trackQueue) {
+            return trackQueue.snapshot();
+        }
+    }
+
+    /**
+     * Gets how many songs are in the queue
+     *
+     * @return The size of the queue
+     */
+    public int getQueueSize() {
+        synchronized (trackQueue) {
+            return trackQueue.size();
+        }
     }
 
     /**
@@ -139,7 +238,9 @@ public class AudioGuild extends AudioEventAdapter {
      */
     public void removeFromQueue(int value) throws AudioException {
         try {
-            trackQueue.remove(value);
+            synchronized (trackQueue) {
+                trackQueue.remove(value);
+            }
         } catch (IndexOutOfBoundsException e) {
             throw new AudioException("Value " + value + " does not exist in the queue.");
         }
@@ -149,33 +250,27 @@ public class AudioGuild extends AudioEventAdapter {
      * Removes duplicate songs based on the URL or File Path
      */
     public int removeDuplicates() {
-        List<TrackRequest> newQueue = new ArrayList<>();
-        int oldSize = trackQueue.size();
-        for (TrackRequest trackRequest : trackQueue) {
-            if (!newQueue.contains(trackRequest))
-                newQueue.add(trackRequest);
+        synchronized (trackQueue) {
+            return trackQueue.removeDuplicates();
         }
-        trackQueue.clear();
-        trackQueue.addAll(newQueue);
-        return oldSize - trackQueue.size();
     }
 
     /**
      * Removes tracks if the user that requested them isn't in the call
      */
     public int removeInactiveUsers() {
-        GuildVoiceState guildVoiceState = yui.getJda().getGuildById(guildId).getSelfMember().getVoiceState();
+        GuildVoiceState guildVoiceState = Misty.shards.getGuildById(guildId).getSelfMember().getVoiceState();
 
         // Get the current members
         List<Member> members = guildVoiceState.getChannel().getMembers();
-        List<Long> memberIds = new ArrayList<>();
+        Set<Long> memberIds = new HashSet<>();
         for (Member member : members)
             memberIds.add(member.getIdLong());
 
         // Remove tracks which don't have the requested member in the channel
-        int oldSize = trackQueue.size();
-        trackQueue.removeIf(trackRequest -> (!memberIds.contains(trackRequest.requestAuthor)));
-        return oldSize - trackQueue.size();
+        synchronized (trackQueue) {
+            return trackQueue.removeIf(trackRequest -> (!memberIds.contains(trackRequest.requestAuthor)));
+        }
     }
 
     /**
@@ -188,11 +283,13 @@ public class AudioGuild extends AudioEventAdapter {
         if (loopSong)
             throw new AudioException("Looping is enabled, so we can't skip forward to a new song.");
 
-        if (value < 0 || value >= trackQueue.size())
-            throw new CommandException("Please provide a valid song to skip to. Hint: Use `queue` to get the songs number");
+        synchronized (trackQueue) {
+            if (value < 0 || value >= trackQueue.size())
+                throw new CommandException("Please provide a valid song to skip to. Hint: Use `queue` to get the songs number");
 
-
-        trackQueue.subList(value, trackQueue.size());
+            // Drop the songs before it so it's next
+            trackQueue.skip(value);
+        }
         playNextSong();
     }
 
@@ -201,6 +298,23 @@ public class AudioGuild extends AudioEventAdapter {
         audioPlayer.setPaused(false);
     }
 
+    /**
+     * Starts the next song only if nothing is currently playing.
+     * Safe to call from multiple threads, the song is put back if another thread started playing first.
+     */
+    public void playIfIdle() {
+        playIfIdle(0);
+    }
+
+    /**
+     * Starts the next song only if nothing is currently playing, timing its first frame from when it was asked for
+     *
+     * @param requestedNanos When the play command started, from System#nanoTime. 0 to time it from when it's picked
+     */
+    public void playIfIdle(long requestedNanos) {
+        playNext(false, requestedNanos);
+    }
+
     /**
      * Restarts the currently playing song
      */
@@ -213,12 +327,14 @@ public class AudioGuild extends AudioEventAdapter {
      */
     public void pause() {
         audioPlayer.setPaused(true);
+        releaseTranscoding();
     }
 
     /**
      * Resumes the song
      */
     public void resume() {
+        applyVolume();
         audioPlayer.setPaused(false);
     }
 
@@ -226,15 +342,28 @@ public class AudioGuild extends AudioEventAdapter {
      * Clears the queue
      */
     public void clear() {
-        trackQueue.clear();
+        synchronized (trackQueue) {
+            trackQueue.clear();
+        }
+        discardPrepared();
     }
 
     /**
      * Stops the current playing song and deletes the audio player
      */
     public void stop() {
+        pendingSong.set(null);
+        ScheduledFuture<?> task = preloadTask;
+        if (task != null)
+            task.cancel(false);
+        discardPrepared();
+        releaseTranscoding();
         audioPlayer.stopTrack();
         audioPlayer.destroy();
+        synchronized (preloadLock) {
+            if (standbyPlayer != null)
+                standbyPlayer.destroy();
+        }
     }
 
     public long getTrackLength() {
@@ -243,32 +372,420 @@ public class AudioGuild extends AudioEventAdapter {
 
     public void seek(long seekTo) {
         audioPlayer.getPlayingTrack().setPosition(seekTo);
+        schedulePreload();
     }
 
     /**
      * Plays the next song based on the AudioGuild settings
      */
     private void playNextSong() {
-        TrackRequest toPlay;
+        playNext(true);
+    }
+
+    /**
+     * Picks the next song and plays it once its AudioTrack is ready.
+     * Songs which are still loading are played when they finish, songs which fail to load are skipped.
+     *
+     * @param interrupt True to replace the current song, false to only play if nothing is playing
+     */
+    private void playNext(boolean interrupt) {
+        playNext(interrupt, 0);
+    }
 
-        if (trackQueue.isEmpty()) {
-            currentSong = null;
+    /**
+     * Picks the next song and plays it once its AudioTrack is ready
+     *
+     * @param interrupt      True to replace the current song, false to only play if nothing is playing
+     * @param requestedNanos When the user asked for the song, from System#nanoTime. 0 if it's just the next song
+     */
+    private void playNext(boolean interrupt, long requestedNanos) {
+        // We're not moving to the song loaded ahead of time, it'll be loaded again when it's played
+        if (interrupt)
+            discardPrepared();
+
+        while (true) {
+            TrackRequest toPlay;
+            AudioTrack audioTrack = null;
+            CompletableFuture<AudioTrack> resolved = null;
+            boolean waiting = false;
+            long loadStarted = System.nanoTime();
+
+            // Only hold the queue lock while picking, Lava Player fires events under its own lock
+            synchronized (trackQueue) {
+                if (!interrupt && (pendingSong.get() != null || audioPlayer.getPlayingTrack() != null))
+                    return;
+
+                if (trackQueue.isEmpty()) {
+                    if (interrupt) {
+                        currentSong = null;
+                        releaseTranscoding();
+                    }
+                    return;
+                }
+
+                if (interrupt && loopSong && currentSong != null)
+                    audioTrack = currentSong.cloneAudioTrack();
+                toPlay = (audioTrack != null) ? currentSong : nextFromQueue();
+
+                // Anything still loading has been replaced, mark the song as pending before other threads can look
+                pendingSong.set(null);
+                audioStats.markSongPicked((requestedNanos != 0) ? requestedNanos : loadStarted);
+                if (audioTrack == null) {
+                    resolved = toPlay.resolve(audioPlayerManager);
+                    if (!resolved.isDone()) {
+                        waiting = true;
+                        pendingSong.set(toPlay);
+                        currentSong = toPlay;
+                    }
+                }
+            }
+
+            if (waiting) {
+                waitForSong(toPlay, resolved, interrupt, loadStarted);
+                return;
+            }
+
+            if (resolved != null) {
+                audioStats.recordReady(System.nanoTime() - loadStarted);
+                audioTrack = getResolvedTrack(toPlay, resolved);
+                if (audioTrack == null)
+                    continue;
+            }
+
+            startSong(toPlay, audioTrack, interrupt);
             return;
         }
+    }
+
+    /**
+     * Plays a pending song once it's finished loading. The current song is stopped while we wait.
+     *
+     * @param toPlay      The song to play
+     * @param resolved    The future resolving the song
+     * @param interrupt   True if the current song should be stopped
+     * @param loadStarted When we started loading the song, from System#nanoTime
+     */
+    private void waitForSong(TrackRequest toPlay, CompletableFuture<AudioTrack> resolved, boolean interrupt, long loadStarted) {
+        if (interrupt)
+            audioPlayer.stopTrack();
+
+        resolved.whenComplete((resolvedTrack, error) -> {
+            audioStats.recordReady(System.nanoTime() - loadStarted);
 
-        if (loopSong && currentSong != null) {
-            toPlay = currentSong;
-            toPlay.audioTrack = toPlay.audioTrack.makeClone();
+            // Something else was played while we were waiting
+            if (!pendingSong.compareAndSet(toPlay, null))
+                return;
 
-        } else if (shuffling)
-            toPlay = trackQueue.remove((int) (Math.random() * trackQueue.size()));
+            AudioTrack audioTrack = getResolvedTrack(toPlay, resolved);
+            if (audioTrack == null) {
+                currentSong = null;
+                playIfIdle();
+                return;
+            }
+            startSong(toPlay, audioTrack, false);
+        });
+    }
 
-        else
-            toPlay = trackQueue.remove(0);
+    /**
+     * Starts playing a song
+     *
+     * @param toPlay     The song to play
+     * @param audioTrack The AudioTrack of the song
+     * @param interrupt  True to replace the current song, false to put the song back if something started playing
+     */
+    private void startSong(TrackRequest toPlay, AudioTrack audioTrack, boolean interrupt) {
+        if (interrupt) {
+            audioPlayer.playTrack(audioTrack);
+        } else if (!audioPlayer.startTrack(audioTrack, true)) {
+            // Lava Player rejects the track if something started playing in the meantime
+            synchronized (trackQueue) {
+                trackQueue.addFirst(toPlay);
+            }
+            return;
+        } else {
+            audioPlayer.setPaused(false);
+        }
 
         currentSong = toPlay;
-        audioPlayer.playTrack(toPlay.audioTrack);
+        applyVolume();
+        prefetch();
+        schedulePreload();
+    }
+
+    /**
+     * Applies the volume to the player when a song starts playing.
+     * At 100% Lava Player passes the Opus frames straight through, any other volume makes it decode and encode every
+     * frame. Only maxTranscodingGuilds can do that at once. If the slots were taken while we weren't playing, songs play
+     * at 100% until a slot frees up. The guild's volume setting is kept, and the channel is told it's suspended.
+     */
+    private void applyVolume() {
+        if (claimTranscoding(currentVolume)) {
+            audioPlayer.setVolume(currentVolume);
+            return;
+        }
+
+        audioPlayer.setVolume(100);
+        boolean newlySuspended;
+        synchronized (transcodingGuilds) {
+            newlySuspended = suspendedGuilds.put(guildId, this) == null;
+        }
+        if (!newlySuspended)
+            return;
+        MessageChannel channel = Misty.shards.getTextChannelById(lastTextChannel);
+        if (channel != null)
+            channel.sendMessage(String.format("⚠️ Too many servers are changing their volume right now, so your volume of %s%% is suspended and songs will play at 100%% until there's room.", currentVolume)).queue();
+    }
+
+    /**
+     * Puts back a suspended volume now that a slot has freed up
+     */
+    private void restoreVolume() {
+        AudioPlayer audioPlayer = this.audioPlayer;
+        if (audioPlayer.getPlayingTrack() == null || audioPlayer.isPaused())
+            return;
+
+        // Someone else may have taken the slot first, if so keep waiting
+        if (!claimTranscoding(currentVolume)) {
+            synchronized (transcodingGuilds) {
+                suspendedGuilds.put(guildId, this);
+            }
+            return;
+        }
         audioPlayer.setVolume(currentVolume);
+        MessageChannel channel = Misty.shards.getTextChannelById(lastTextChannel);
+        if (channel != null)
+            channel.sendMessage(String.format("There's room again, the volume is back to %s%%.", currentVolume)).queue();
+    }
+
+    /**
+     * Takes a transcoding slot if the volume needs one, or gives it up if it doesn't
+     *
+     * @param volume The volume to play at
+     * @return False if the volume needs a slot and there's no room
+     */
+    private boolean claimTranscoding(int volume) {
+        AudioGuild waiting;
+        synchronized (transcodingGuilds) {
+            if (volume != 100) {
+                if (!canTranscode(volume))
+                    return false;
+                transcodingGuilds.add(guildId);
+                suspendedGuilds.remove(guildId);
+                return true;
+            }
+            suspendedGuilds.remove(guildId);
+            waiting = transcodingGuilds.remove(guildId) ? nextSuspended() : null;
+        }
+        if (waiting != null)
+            waiting.restoreVolume();
+        return true;
+    }
+
+    /**
+     * Checks if there's room to play at a volume, without taking a slot
+     *
+     * @param volume The volume to check
+     * @return True if the volume doesn't need a slot, we already have one or there's one free
+     */
+    private boolean canTranscode(int volume) {
+        synchronized (transcodingGuilds) {
+            return volume == 100 || maxTranscodingGuilds < 0 || transcodingGuilds.contains(guildId) || transcodingGuilds.size() < maxTranscodingGuilds;
+        }
+    }
+
+    /**
+     * Gives up our transcoding slot while nothing is playing, passing it to a guild whose volume is suspended
+     */
+    private void releaseTranscoding() {
+        AudioGuild waiting;
+        synchronized (transcodingGuilds) {
+            suspendedGuilds.remove(guildId);
+            waiting = transcodingGuilds.remove(guildId) ? nextSuspended() : null;
+        }
+        audioPlayer.setVolume(100);
+        if (waiting != null)
+            waiting.restoreVolume();
+    }
+
+    /**
+     * Takes the guild which has been waiting longest for a transcoding slot. Must hold the transcodingGuilds lock.
+     *
+     * @return The guild to restore, null if nobody is waiting
+     */
+    private static AudioGuild nextSuspended() {
+        Iterator<AudioGuild> iterator = suspendedGuilds.values().iterator();
+        if (!iterator.hasNext())
+            return null;
+        AudioGuild next = iterator.next();
+        iterator.remove();
+        return next;
+    }
+
+    /**
+     * Schedules the next song to start loading shortly before the current song ends
+     */
+    private void schedulePreload() {
+        ScheduledFuture<?> task = preloadTask;
+        if (task != null)
+            task.cancel(false);
+
+        AudioTrack playing = audioPlayer.getPlayingTrack();
+        if (preloadSeconds <= 0 || playing == null || playing.getInfo().isStream)
+            return;
+
+        long delay = playing.getDuration() - playing.getPosition() - TimeUnit.SECONDS.toMillis(preloadSeconds);
+        preloadTask = preloadScheduler.schedule(this::preloadNext, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts the next song paused on the standby player, so it's connected and buffered when the current song ends
+     */
+    private void preloadNext() {
+        try {
+            // The song may have been paused or seeked since this was scheduled
+            AudioTrack playing = audioPlayer.getPlayingTrack();
+            if (playing == null)
+                return;
+            long remaining = playing.getDuration() - playing.getPosition() - TimeUnit.SECONDS.toMillis(preloadSeconds);
+            if (remaining > TimeUnit.SECONDS.toMillis(1)) {
+                preloadTask = preloadScheduler.schedule(this::preloadNext, remaining, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            // We can't tell which song is next when looping or shuffling
+            TrackRequest next;
+            synchronized (trackQueue) {
+                if (loopSong || shuffling || trackQueue.isEmpty() || pendingSong.get() != null)
+                    return;
+                next = trackQueue.get(0);
+            }
+
+            // Songs which haven't loaded yet are played the normal way
+            CompletableFuture<AudioTrack> resolved = next.resolve(audioPlayerManager);
+            if (!resolved.isDone() || resolved.isCompletedExceptionally())
+                return;
+
+            synchronized (preloadLock) {
+                if (preparedSong != null)
+                    return;
+                if (standbyPlayer == null) {
+                    standbyPlayer = audioPlayerManager.createPlayer();
+                    standbyPlayer.addListener(this);
+                }
+
+                // Nothing reads from a paused player, so it buffers the start of the song and waits
+                AudioTrack audioTrack = next.cloneAudioTrack();
+                if (audioTrack == null)
+                    return;
+                standbyPlayer.setPaused(true);
+                standbyPlayer.setVolume(audioPlayer.getVolume());
+                standbyPlayer.playTrack(audioTrack);
+                preparedSong = next;
+            }
+        } catch (Exception e) {
+            this.logger.warn(String.format("Failed to load the next song ahead of time for guild %s", guildId), e);
+        }
+    }
+
+    /**
+     * Swaps to the song loaded on the standby player, if it's still the next song in the queue
+     *
+     * @return True if we swapped, false if the next song needs to be played the normal way
+     */
+    private boolean swapToPrepared() {
+        synchronized (preloadLock) {
+            TrackRequest prepared = preparedSong;
+            if (prepared == null)
+                return false;
+
+            // The song may have failed while it was loading
+            boolean stillNext = standbyPlayer.getPlayingTrack() != null;
+            synchronized (trackQueue) {
+                stillNext &= !loopSong && !shuffling && !trackQueue.isEmpty() && trackQueue.get(0) == prepared;
+                if (stillNext)
+                    trackQueue.poll();
+            }
+            if (!stillNext) {
+                discardPrepared();
+                return false;
+            }
+
+            // The old player becomes the standby for the song after
+            AudioPlayer finished = audioPlayer;
+            audioPlayer = standbyPlayer;
+            standbyPlayer = finished;
+            preparedSong = null;
+            audioStats.markSongPicked(System.nanoTime());
+            applyVolume();
+            sendHandler.setAudioPlayer(audioPlayer);
+            audioPlayer.setPaused(false);
+            currentSong = prepared;
+        }
+
+        prefetch();
+        schedulePreload();
+        return true;
+    }
+
+    /**
+     * Stops the song loaded on the standby player. The request gets a fresh AudioTrack so it can still be played.
+     */
+    private void discardPrepared() {
+        synchronized (preloadLock) {
+            if (preparedSong == null)
+                return;
+            standbyPlayer.stopTrack();
+            preparedSong.cloneAudioTrack();
+            preparedSong = null;
+        }
+    }
+
+    /**
+     * Gets the AudioTrack from a finished resolve, letting the channel know if the song is being skipped
+     *
+     * @param trackRequest The song which was resolved
+     * @param resolved     The finished future
+     * @return The AudioTrack, null if it couldn't be loaded
+     */
+    private AudioTrack getResolvedTrack(TrackRequest trackRequest, CompletableFuture<AudioTrack> resolved) {
+        try {
+            return resolved.join();
+        } catch (CompletionException | CancellationException e) {
+            MessageChannel channel = Misty.shards.getTextChannelById(lastTextChannel);
+            if (channel != null)
+                channel.sendMessage("⚠️ Skipping `" + trackRequest.title + "` as it couldn't be loaded.").queue();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the next few songs ready ahead of time, so playing them doesn't have to wait.
+     * Songs which are only a URL start loading in the background.
+     */
+    private void prefetch() {
+        List<TrackRequest> upcoming = new ArrayList<>();
+        synchronized (trackQueue) {
+            // We can't tell which song is next when shuffling
+            if (shuffling)
+                return;
+            for (int i = 0; i < Math.min(queueLookahead, trackQueue.size()); i++)
+                upcoming.add(trackQueue.get(i));
+        }
+
+        // Failures are reported when the song is played
+        for (TrackRequest trackRequest : upcoming)
+            trackRequest.resolve(audioPlayerManager);
+    }
+
+    /**
+     * Removes the next song from the queue based on the shuffle setting. The caller must hold the queue lock.
+     *
+     * @return The next song to play
+     */
+    private TrackRequest nextFromQueue() {
+        if (shuffling)
+            return trackQueue.remove((int) (Math.random() * trackQueue.size()));
+        return trackQueue.poll();
     }
 
     /**
@@ -277,11 +794,9 @@ public class AudioGuild extends AudioEventAdapter {
      * @return The URL to the image
      */
     public String getArtwork() {
-        AudioTrack audioTrack = currentSong.audioTrack;
-        String platform = audioTrack.getSourceManager().getSourceName();
-
-        if (platform.equals("youtube"))
-            return "https://i3.ytimg.com/vi/" + audioTrack.getInfo().identifier + "/hqdefault.jpg";
+        TrackRequest trackRequest = currentSong;
+        if ("youtube".equals(trackRequest.sourceName))
+            return "https://i3.ytimg.com/vi/" + trackRequest.identifier + "/hqdefault.jpg";
         return null;
     }
 
@@ -290,6 +805,14 @@ public class AudioGuild extends AudioEventAdapter {
      */
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+        // The standby player's song is checked when we swap to it
+        if (player != audioPlayer)
+            return;
+
+        // Move straight to the song we loaded ahead of time
+        if (endReason == AudioTrackEndReason.FINISHED && swapToPrepared())
+            return;
+
         // Encountered some sort of error
         if (endReason.mayStartNext)
             playNextSong();
@@ -297,15 +820,20 @@ public class AudioGuild extends AudioEventAdapter {
 
     @Override
     public void onTrackException(AudioPlayer player, AudioTrack track, FriendlyException exception) {
-        yui.getJda().getTextChannelById(this.lastTextChannel).sendMessage(
+        if (player != audioPlayer)
+            return;
+        Misty.shards.getTextChannelById(this.lastTextChannel).sendMessage(
                 "⚠️ " + exception.getMessage()
         ).queue();
     }
 
     @Override
     public void onTrackStuck(AudioPlayer player, AudioTrack track, long thresholdMs) {
+        if (player != audioPlayer)
+            return;
+        audioStats.recordStuck(thresholdMs);
         playNextSong();
-        MessageChannel channel = yui.getJda().getTextChannelById(lastTextChannel);
+        MessageChannel channel = Misty.shards.getTextChannelById(lastTextChannel);
         channel.sendMessage("The music source stopped responding, moving to the next track.").queue();
     }
 
@@ -3,23 +3,32 @@ package sh.niall.misty.utils.audio;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.source.AudioSourceManagers;
+import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBuffer;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.GuildVoiceState;
+import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.VoiceChannel;
 import net.dv8tion.jda.api.managers.AudioManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
 import sh.niall.yui.Yui;
 import sh.niall.yui.exceptions.CommandException;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class AudioGuildManager {
 
-    private HashMap<Long, AudioGuild> audioGuilds = new HashMap<>();
+    // Concurrent so lookups don't lock and creation is atomic per guild
+    private final Map<Long, AudioGuild> audioGuilds = new ConcurrentHashMap<>();
     private AudioPlayerManager audioPlayerManager = new DefaultAudioPlayerManager();
     private Yui yui;
+    private Logger logger = LoggerFactory.getLogger(AudioGuildManager.class);
 
     public AudioGuildManager(Yui yui) {
         this.yui = yui;
@@ -28,6 +37,11 @@ public class AudioGuildManager {
         AudioSourceManagers.registerLocalSource(this.audioPlayerManager);
         AudioSourceManagers.registerRemoteSources(this.audioPlayerManager);
 
+        // Frames are provided every 20ms for every playing guild, so reuse the buffer's memory instead of making a new frame each time
+        if (Misty.config.isNonAllocatingAudio())
+            this.audioPlayerManager.getConfiguration().setFrameBufferFactory(NonAllocatingAudioFrameBuffer::new);
+        this.audioPlayerManager.setFrameBufferDuration(Misty.config.getAudioFrameBufferMs());
+
         // Start the inactive checker
         ((ScheduledExecutorService) Executors.newSingleThreadScheduledExecutor()).scheduleAtFixedRate(this::runInactiveCheck, 0, 10, TimeUnit.MINUTES);
     }
@@ -43,13 +57,45 @@ public class AudioGuildManager {
      * @return The AudioGuild for the specified guild
      */
     public AudioGuild getAudioGuild(long guildId) {
+        // Check without locking first, most calls are for existing guilds
         AudioGuild audioGuild = audioGuilds.get(guildId);
-        if (audioGuild == null) {
-            audioGuild = new AudioGuild(yui, guildId, audioPlayerManager);
-            audioGuilds.put(guildId, audioGuild);
-            yui.getJda().getGuildById(guildId).getAudioManager().setSendingHandler(audioGuild.getSendHandler());
-        }
-        return audioGuild;
+        if (audioGuild != null)
+            return audioGuild;
+
+        // Only one thread will create the AudioGuild, others wait for it
+        return audioGuilds.computeIfAbsent(guildId, id -> {
+            AudioGuild newAudioGuild = new AudioGuild(yui, id, audioPlayerManager);
+            getGuild(id).getAudioManager().setSendingHandler(newAudioGuild.getSendHandler());
+            return newAudioGuild;
+        });
+    }
+
+    /**
+     * Gets the audio guild for the specified guild without creating one
+     *
+     * @param guildId The guild id to search for
+     * @return The AudioGuild, null if the guild isn't using audio
+     */
+    public AudioGuild findAudioGuild(long guildId) {
+        return audioGuilds.get(guildId);
+    }
+
+    /**
+     * Gets every guild currently using audio
+     *
+     * @return The AudioGuilds
+     */
+    public Collection<AudioGuild> getAudioGuilds() {
+        return audioGuilds.values();
+    }
+
+    /**
+     * Gets how many guilds are currently using audio
+     *
+     * @return The amount of AudioGuilds
+     */
+    public int getAudioGuildCount() {
+        return audioGuilds.size();
     }
 
     /**
@@ -58,37 +104,61 @@ public class AudioGuildManager {
      * @param guildId The guildId of the AudioGuild you want to delete
      */
     public void deleteAudioGuild(long guildId) {
-        AudioGuild audioGuild = audioGuilds.get(guildId);
+        // Removing first means only one caller gets to stop it
+        AudioGuild audioGuild = audioGuilds.remove(guildId);
         if (audioGuild == null)
             return;
 
         audioGuild.stop();
-        audioGuilds.remove(guildId);
-        yui.getJda().getGuildById(guildId).getAudioManager().closeAudioConnection();
+        Guild guild = getGuild(guildId);
+        if (guild != null)
+            guild.getAudioManager().closeAudioConnection();
     }
 
     /**
      * Cleans up inactive guilds
      */
     public void runInactiveCheck() {
-        for (long key : audioGuilds.keySet()) {
-            // First get the guild and locate the voice session
-            Guild guild = yui.getJda().getGuildById(key);
-            GuildVoiceState guildVoiceState = guild.getSelfMember().getVoiceState();
-
-            // Get the audio guild
-            AudioGuild audioGuild = audioGuilds.get(key);
-
-            // If the voice state doesn't exist or we're the only ones there, leave and inform.
-            if (guildVoiceState == null || guildVoiceState.getChannel().getMembers().size() < 2) {
-                guild.getTextChannelById(audioGuild.getLastTextChannel()).sendMessage(
-                        "Leaving the voice call because I'm the only one here."
-                ).queue(message -> message.delete().queueAfter(5, TimeUnit.SECONDS));
-                deleteAudioGuild(key);
+        // Iterating a ConcurrentHashMap is safe while other threads add and remove guilds
+        for (Map.Entry<Long, AudioGuild> entry : audioGuilds.entrySet()) {
+            long key = entry.getKey();
+            AudioGuild audioGuild = entry.getValue();
+
+            // A failing guild shouldn't stop the check for the others or cancel future checks
+            try {
+                // First get the guild and locate the voice session
+                Guild guild = getGuild(key);
+                if (guild == null) {
+                    deleteAudioGuild(key);
+                    continue;
+                }
+                GuildVoiceState guildVoiceState = guild.getSelfMember().getVoiceState();
+
+                // If the voice state doesn't exist or we're the only ones there, leave and inform.
+                if (guildVoiceState == null || guildVoiceState.getChannel() == null || guildVoiceState.getChannel().getMembers().size() < 2) {
+                    TextChannel textChannel = guild.getTextChannelById(audioGuild.getLastTextChannel());
+                    if (textChannel != null)
+                        textChannel.sendMessage(
+                                "Leaving the voice call because I'm the only one here."
+                        ).queue(message -> message.delete().queueAfter(5, TimeUnit.SECONDS));
+                    deleteAudioGuild(key);
+                }
+            } catch (Exception e) {
+                this.logger.error(String.format("Inactive check failed for guild %s", key), e);
             }
         }
     }
 
+    /**
+     * Gets a guild from the shard that owns it
+     *
+     * @param guildId The guild id to search for
+     * @return The guild, null if we can't see it
+     */
+    private Guild getGuild(long guildId) {
+        return Misty.shards.getGuildById(guildId);
+    }
+
     public void joinChannel(Guild guild, VoiceChannel channel) throws InterruptedException, CommandException {
         // Get the Guilds audio manager
         AudioManager audioManager = guild.getAudioManager();
@@ -0,0 +1,196 @@
+package sh.niall.misty.utils.audio;
+
+import sh.niall.misty.utils.misty.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Audio Stats
+ * Counts how well audio is being delivered, so stutter can be traced to the source, our CPU or the gateway.
+ * Each AudioGuild has its own stats, which also add to the global stats.
+ */
+public class AudioStats {
+
+    public static final AudioStats global = new AudioStats(null);
+    private static final long frameNanos = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final AudioStats parent;
+
+    // Counters
+    private final AtomicLong framesProvided = new AtomicLong();
+    private final AtomicLong framesMissed = new AtomicLong();
+    private final AtomicLong underruns = new AtomicLong();
+    private final AtomicLong stuckEvents = new AtomicLong();
+    private final AtomicLong framesTranscoded = new AtomicLong();
+    private volatile long lastStuckThresholdMs = 0;
+
+    // Histograms
+    private final Histogram jitter = new Histogram();
+    private final Histogram loadLatency = new Histogram();
+    private final Histogram readyLatency = new Histogram();
+    private final Histogram firstFrame = new Histogram();
+
+    // Send path state, only used by the thread JDA sends audio on
+    private long lastFrameNanos = 0;
+    private boolean missing = false;
+    private volatile long songPickedNanos = 0;
+
+    private AudioStats(AudioStats parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates stats for a guild which add to the global stats
+     *
+     * @return The new stats
+     */
+    public static AudioStats forGuild() {
+        return new AudioStats(global);
+    }
+
+    /**
+     * Records JDA asking for a frame, called every 20ms while connected
+     *
+     * @param provided True if a frame was provided
+     * @param playing  True if a song is playing and isn't paused
+     */
+    public void recordFrame(boolean provided, boolean playing) {
+        long now = System.nanoTime();
+        if (!provided) {
+            lastFrameNanos = 0;
+
+            // A song which hasn't started yet is still buffering, not missing frames
+            if (!playing || songPickedNanos != 0)
+                return;
+            increment(framesMissed, (parent == null) ? null : parent.framesMissed);
+            if (!missing) {
+                missing = true;
+                increment(underruns, (parent == null) ? null : parent.underruns);
+            }
+            return;
+        }
+
+        increment(framesProvided, (parent == null) ? null : parent.framesProvided);
+        missing = false;
+
+        // How far the gap between frames was from 20ms
+        if (lastFrameNanos != 0)
+            record(jitter, (parent == null) ? null : parent.jitter, Math.abs(now - lastFrameNanos - frameNanos));
+        lastFrameNanos = now;
+
+        long picked = songPickedNanos;
+        if (picked != 0) {
+            songPickedNanos = 0;
+            record(firstFrame, (parent == null) ? null : parent.firstFrame, now - picked);
+        }
+    }
+
+    /**
+     * Records a frame which Lava Player had to decode and encode to change the volume, instead of passing it through
+     */
+    public void recordTranscodedFrame() {
+        increment(framesTranscoded, (parent == null) ? null : parent.framesTranscoded);
+    }
+
+    /**
+     * Marks that a song was picked to play next, the time until its first frame is recorded
+     *
+     * @param startedNanos When the user asked for the song, or when it was picked if it wasn't asked for, from System#nanoTime
+     */
+    public void markSongPicked(long startedNanos) {
+        songPickedNanos = startedNanos;
+    }
+
+    /**
+     * Records how long Lava Player took to load a query, from submitting it to getting the result
+     *
+     * @param nanos The load time in nanoseconds
+     */
+    public void recordLoad(long nanos) {
+        record(loadLatency, (parent == null) ? null : parent.loadLatency, nanos);
+    }
+
+    /**
+     * Records how long a picked song took to be ready to play
+     *
+     * @param nanos The wait in nanoseconds
+     */
+    public void recordReady(long nanos) {
+        record(readyLatency, (parent == null) ? null : parent.readyLatency, nanos);
+    }
+
+    /**
+     * Records Lava Player reporting a stuck song
+     *
+     * @param thresholdMs The threshold the song went over
+     */
+    public void recordStuck(long thresholdMs) {
+        increment(stuckEvents, (parent == null) ? null : parent.stuckEvents);
+        lastStuckThresholdMs = thresholdMs;
+        if (parent != null)
+            parent.lastStuckThresholdMs = thresholdMs;
+    }
+
+    private void increment(AtomicLong counter, AtomicLong parentCounter) {
+        counter.incrementAndGet();
+        if (parentCounter != null)
+            parentCounter.incrementAndGet();
+    }
+
+    private void record(Histogram histogram, Histogram parentHistogram, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        histogram.record(millis);
+        if (parentHistogram != null)
+            parentHistogram.record(millis);
+    }
+
+    public long getFramesProvided() {
+        return framesProvided.get();
+    }
+
+    public long getFramesMissed() {
+        return framesMissed.get();
+    }
+
+    public long getUnderruns() {
+        return underruns.get();
+    }
+
+    public long getStuckEvents() {
+        return stuckEvents.get();
+    }
+
+    public long getFramesTranscoded() {
+        return framesTranscoded.get();
+    }
+
+    /**
+     * Gets how much audio has been transcoded, each frame is 20ms
+     *
+     * @return The seconds of audio transcoded
+     */
+    public long getTranscodedSeconds() {
+        return framesTranscoded.get() / 50;
+    }
+
+    public long getLastStuckThresholdMs() {
+        return lastStuckThresholdMs;
+    }
+
+    public Histogram getJitter() {
+        return jitter;
+    }
+
+    public Histogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    public Histogram getReadyLatency() {
+        return readyLatency;
+    }
+
+    public Histogram getFirstFrame() {
+        return firstFrame;
+    }
+}
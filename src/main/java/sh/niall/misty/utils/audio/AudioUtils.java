@@ -10,17 +10,38 @@ import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.VoiceChannel;
+import sh.niall.misty.Misty;
 import sh.niall.misty.errors.AudioException;
+import sh.niall.misty.errors.LoadFailedException;
 import sh.niall.misty.errors.MistyException;
-import sh.niall.misty.utils.audio.helpers.TrackWaiter;
+import sh.niall.misty.utils.audio.helpers.FailedQuery;
+import sh.niall.misty.utils.audio.helpers.InFlightQuery;
+import sh.niall.misty.utils.audio.interfaces.TrackStreamCallback;
+import sh.niall.misty.utils.playlists.PlaylistUtils;
 import sh.niall.yui.cogs.commands.context.Context;
 import sh.niall.yui.exceptions.CommandException;
+import sh.niall.yui.exceptions.YuiException;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AudioUtils {
 
+    public static long queryTimeout = 5000;
+    public static long sharedLoadTimeout = 30000;
+    public static long streamShareTimeout = 60000;
+    private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+    private static final Map<String, InFlightQuery> inFlightQueries = new ConcurrentHashMap<>();
+    private static final AtomicLong startedQueries = new AtomicLong();
+    private static final AtomicLong coalescedQueries = new AtomicLong();
+
     public static boolean userInVoice(Context ctx) {
         return ctx.getAuthor().getVoiceState() != null && ctx.getAuthor().getVoiceState().inVoiceChannel();
     }
@@ -80,30 +101,451 @@ public class AudioUtils {
         audioGuildManager.getAudioGuild(ctx.getGuild().getIdLong()).setLastTextChannel(ctx.getChannel().getIdLong());
     }
 
+    /**
+     * Runs a query and waits for the results
+     *
+     * @param audioMgr The audio player manager to load with
+     * @param query    The query to run
+     * @param guild    The guild the query is for, used to keep queries in order
+     * @return The tracks found
+     * @throws MistyException Thrown if we were interrupted while waiting
+     * @throws AudioException Thrown if the query failed or timed out
+     */
     public static List<AudioTrack> runQuery(AudioPlayerManager audioMgr, String query, Guild guild) throws MistyException, AudioException {
-        TrackWaiter waiter = new TrackWaiter();
-        audioMgr.loadItemOrdered((guild != null) ? guild : 0, query, new AudioLoadResultHandler() {
+        CompletableFuture<List<AudioTrack>> future = queryAsync(audioMgr, query, guild);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new MistyException("There was an error getting the track.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AudioException)
+                throw (AudioException) e.getCause();
+            throw new MistyException("There was an error getting the track.");
+        }
+    }
+
+    /**
+     * Runs a query without blocking, using the default timeout
+     *
+     * @param audioMgr The audio player manager to load with
+     * @param query    The query to run
+     * @param guild    The guild the query is for, used to keep queries in order. Null if the order doesn't matter
+     * @return A future which completes with the tracks found, or an AudioException
+     */
+    public static CompletableFuture<List<AudioTrack>> queryAsync(AudioPlayerManager audioMgr, String query, Guild guild) {
+        return queryAsync(audioMgr, query, guild, queryTimeout, null);
+    }
+
+    /**
+     * Runs a query without blocking.
+     * Cancelling the future, or letting it time out, also cancels the load if nobody else is waiting on it.
+     * Queries which recently returned nothing or failed to load fail straight away until they're due to be retried.
+     * If the same query is already loading, the caller shares that load and gets their own copy of the tracks.
+     *
+     * @param audioMgr The audio player manager to load with
+     * @param query    The query to run
+     * @param guild    The guild the query is for, used to keep queries in order. Null if the order doesn't matter
+     * @param timeout  How long this caller waits for the load in milliseconds
+     * @param executor The executor to complete the future on, null to complete it on the Lava Player thread
+     * @return A future which completes with the tracks found, or an AudioException
+     */
+    public static CompletableFuture<List<AudioTrack>> queryAsync(AudioPlayerManager audioMgr, String query, Guild guild, long timeout, Executor executor) {
+        // Don't load queries we know will fail
+        AudioException knownFailure = checkFailedQuery(query);
+        if (knownFailure != null) {
+            CompletableFuture<List<AudioTrack>> future = new CompletableFuture<>();
+            future.completeExceptionally(knownFailure);
+            return future;
+        }
+
+        // Join the load if someone else is already running this query
+        String key = canonicalQuery(query);
+        InFlightQuery inFlightQuery = joinInFlight(key);
+        if (inFlightQuery != null) {
+            coalescedQueries.incrementAndGet();
+            return attach(inFlightQuery, timeout, executor);
+        }
+
+        // We registered the query, so we're the one who loads it
+        InFlightQuery started = registerInFlight(key);
+        if (started == null)
+            return queryAsync(audioMgr, query, guild, timeout, executor);
+        startedQueries.incrementAndGet();
+        loadAsync(audioMgr, query, guild, started.future);
+        return attach(started, timeout, executor);
+    }
+
+    /**
+     * Joins a query which is already loading
+     *
+     * @param key The canonical query
+     * @return The query joined, null if there isn't one which can be joined
+     */
+    private static InFlightQuery joinInFlight(String key) {
+        InFlightQuery inFlightQuery = inFlightQueries.get(key);
+        if (inFlightQuery == null)
+            return null;
+        if (inFlightQuery.join())
+            return inFlightQuery;
+
+        // It's finished or been abandoned, make room for a new load
+        inFlightQueries.remove(key, inFlightQuery);
+        return null;
+    }
+
+    /**
+     * Registers a new query so others can share it, with the caller as its first waiter
+     *
+     * @param key The canonical query
+     * @return The query registered, null if someone else registered one first and it should be joined instead
+     */
+    private static InFlightQuery registerInFlight(String key) {
+        InFlightQuery registered = new InFlightQuery(new CompletableFuture<>(), 1);
+        if (inFlightQueries.putIfAbsent(key, registered) != null)
+            return null;
+        registered.future.whenComplete((tracks, error) -> inFlightQueries.remove(key, registered));
+        return registered;
+    }
+
+    /**
+     * Loads a query, the results are shared so they must be cloned before they're used.
+     * The load has its own deadline so one caller timing out doesn't fail everyone else waiting on it,
+     * each caller's own timeout is handled by #attach.
+     *
+     * @param audioMgr The audio player manager to load with
+     * @param query    The query to run
+     * @param guild    The guild the query is for, used to keep queries in order. Null if the order doesn't matter
+     * @param future   The future to complete on the Lava Player thread with the tracks found, or an AudioException
+     */
+    private static void loadAsync(AudioPlayerManager audioMgr, String query, Guild guild, CompletableFuture<List<AudioTrack>> future) {
+        long submitted = System.nanoTime();
+        AudioLoadResultHandler handler = new AudioLoadResultHandler() {
             @Override
             public void trackLoaded(AudioTrack track) {
-                waiter.setResult(Collections.singletonList(track), null);
+                recordLoad(submitted);
+                Misty.failedQueries.recordSuccess(query);
+                future.complete(Collections.singletonList(track));
             }
 
             @Override
             public void playlistLoaded(AudioPlaylist playlist) {
-                waiter.setResult(playlist.getTracks(), null);
+                recordLoad(submitted);
+                Misty.failedQueries.recordSuccess(query);
+                future.complete(playlist.getTracks());
             }
 
             @Override
             public void noMatches() {
-                waiter.setResult(null, new AudioException("No results found!"));
+                recordLoad(submitted);
+                Misty.failedQueries.recordFailure(query, "No results found!");
+                future.completeExceptionally(new LoadFailedException("No results found!"));
             }
 
             @Override
             public void loadFailed(FriendlyException exception) {
-                waiter.setResult(null, new AudioException(exception.getMessage()));
+                recordLoad(submitted);
+                recordFailure(query, exception);
+                future.completeExceptionally(new LoadFailedException(exception.getMessage()));
             }
+        };
+
+        // Run the load
+        Future<Void> loadFuture = (guild != null) ? audioMgr.loadItemOrdered(guild, query, handler) : audioMgr.loadItem(query, handler);
+
+        // Give up on the load if it takes too long, even if someone is still waiting on it
+        ScheduledFuture<?> timeoutFuture = timeoutScheduler.schedule(
+                () -> future.completeExceptionally(new AudioException("Timed out while loading the track, please try again.")),
+                sharedLoadTimeout, TimeUnit.MILLISECONDS
+        );
+
+        // Clean up once we're done, stopping the load if we didn't get a result or the last waiter left
+        future.whenComplete((tracks, error) -> {
+            timeoutFuture.cancel(false);
+            if (error != null)
+                loadFuture.cancel(true);
+        });
+    }
+
+    /**
+     * Waits on a shared query, giving the caller their own copy of the tracks.
+     * The timeout only fails this caller, the load is cancelled once every caller has left.
+     *
+     * @param inFlightQuery The query to wait on, the caller must have already joined it
+     * @param timeout       How long to wait in milliseconds
+     * @param executor      The executor to complete the future on, null to complete it on the Lava Player thread
+     * @return A future which completes with copies of the tracks found, or an AudioException
+     */
+    private static CompletableFuture<List<AudioTrack>> attach(InFlightQuery inFlightQuery, long timeout, Executor executor) {
+        CompletableFuture<List<AudioTrack>> future = new CompletableFuture<>();
+        inFlightQuery.future.whenComplete((tracks, error) -> {
+            Runnable task = () -> {
+                if (error == null)
+                    future.complete(cloneTracks(tracks));
+                else if (error instanceof AudioException)
+                    future.completeExceptionally(error);
+                else
+                    future.completeExceptionally(new AudioException("There was an error getting the track."));
+            };
+
+            // Fall back to this thread if the executor is full
+            try {
+                if (executor == null)
+                    task.run();
+                else
+                    executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        });
+
+        // Give up if it takes too long, the load stops once everyone has given up
+        ScheduledFuture<?> timeoutFuture = timeoutScheduler.schedule(
+                () -> future.completeExceptionally(new AudioException("Timed out while loading the track, please try again.")),
+                timeout, TimeUnit.MILLISECONDS
+        );
+        future.whenComplete((tracks, error) -> {
+            timeoutFuture.cancel(false);
+            if (error != null)
+                inFlightQuery.leave();
         });
-        return waiter.getResult();
+        return future;
+    }
+
+    /**
+     * Runs a query without blocking, passing tracks to the callback as soon as they're loaded.
+     * If a YouTube URL has a video and a playlist, the video is loaded on its own first so it can start playing while
+     * the playlist is still loading. If the same query is already loading, the caller gets a copy of its tracks once
+     * it finishes instead of loading it again.
+     *
+     * @param audioMgr The audio player manager to load with
+     * @param query    The query to run
+     * @param guild    The guild the query is for, used to keep queries in order
+     * @param callback The callback to pass the tracks to
+     */
+    public static void streamQuery(AudioPlayerManager audioMgr, String query, Guild guild, TrackStreamCallback callback) {
+        // Don't load queries we know will fail
+        AudioException knownFailure = checkFailedQuery(query);
+        if (knownFailure != null) {
+            callback.finished(0, knownFailure);
+            return;
+        }
+
+        // Join the load if someone else is already running this query
+        String key = canonicalQuery(query);
+        InFlightQuery inFlightQuery = joinInFlight(key);
+        if (inFlightQuery != null) {
+            coalescedQueries.incrementAndGet();
+            attach(inFlightQuery, streamShareTimeout, null).whenComplete((tracks, error) -> {
+                if (error != null) {
+                    callback.finished(0, (error instanceof YuiException) ? (YuiException) error : new AudioException("There was an error getting the track."));
+                    return;
+                }
+                try {
+                    callback.finished(callback.tracksLoaded(tracks), null);
+                } catch (YuiException e) {
+                    callback.finished(0, e);
+                }
+            });
+            return;
+        }
+
+        // Let others share this load, the stream keeps going even if nobody else joins in time
+        InFlightQuery shared = registerInFlight(key);
+        if (shared == null) {
+            streamQuery(audioMgr, query, guild, callback);
+            return;
+        }
+        timeoutScheduler.schedule(() -> shared.future.cancel(false), streamShareTimeout, TimeUnit.MILLISECONDS);
+        startedQueries.incrementAndGet();
+
+        Object orderingKey = (guild != null) ? guild : 0;
+        String videoId = PlaylistUtils.getYoutubeVideoId(query);
+        String playlistId = PlaylistUtils.getYoutubePlaylistId(query);
+        AtomicReference<String> streamedId = new AtomicReference<>();
+        AtomicInteger total = new AtomicInteger(0);
+        AtomicBoolean stopped = new AtomicBoolean(false);
+
+        // Load the selected video first, the ordering key makes sure this finishes before the playlist loads
+        if (videoId != null && playlistId != null) {
+            audioMgr.loadItemOrdered(orderingKey, "https://www.youtube.com/watch?v=" + videoId, new AudioLoadResultHandler() {
+                @Override
+                public void trackLoaded(AudioTrack track) {
+                    try {
+                        total.addAndGet(callback.tracksLoaded(Collections.singletonList(track)));
+                        streamedId.set(track.getIdentifier());
+                    } catch (YuiException e) {
+                        stopped.set(true);
+                        callback.finished(total.get(), e);
+                    }
+                }
+
+                @Override
+                public void playlistLoaded(AudioPlaylist playlist) {
+                }
+
+                @Override
+                public void noMatches() {
+                }
+
+                @Override
+                public void loadFailed(FriendlyException exception) {
+                }
+            });
+        }
+
+        long submitted = System.nanoTime();
+        audioMgr.loadItemOrdered(orderingKey, query, new AudioLoadResultHandler() {
+            @Override
+            public void trackLoaded(AudioTrack track) {
+                recordLoad(submitted);
+                Misty.failedQueries.recordSuccess(query);
+                shared.future.complete(Collections.singletonList(track));
+                if (stopped.get())
+                    return;
+
+                // The track may have already been streamed
+                if (track.getIdentifier().equals(streamedId.get()) || deliver(Collections.singletonList(track)))
+                    callback.finished(total.get(), null);
+            }
+
+            @Override
+            public void playlistLoaded(AudioPlaylist playlist) {
+                recordLoad(submitted);
+                Misty.failedQueries.recordSuccess(query);
+
+                // Start with the selected track and skip the track we've already streamed
+                List<AudioTrack> tracks = new ArrayList<>(playlist.getTracks());
+                AudioTrack selected = playlist.getSelectedTrack();
+                if (selected != null && tracks.remove(selected))
+                    tracks.add(0, selected);
+                shared.future.complete(new ArrayList<>(tracks));
+                if (stopped.get())
+                    return;
+                tracks.removeIf(track -> track.getIdentifier().equals(streamedId.get()));
+
+                if (deliver(tracks))
+                    callback.finished(total.get(), null);
+            }
+
+            @Override
+            public void noMatches() {
+                recordLoad(submitted);
+                Misty.failedQueries.recordFailure(query, "No results found!");
+                shared.future.completeExceptionally(new LoadFailedException("No results found!"));
+                if (!stopped.get())
+                    callback.finished(total.get(), (total.get() == 0) ? new AudioException("No results found!") : null);
+            }
+
+            @Override
+            public void loadFailed(FriendlyException exception) {
+                recordLoad(submitted);
+                recordFailure(query, exception);
+                shared.future.completeExceptionally(new LoadFailedException(exception.getMessage()));
+                if (!stopped.get())
+                    callback.finished(total.get(), (total.get() == 0) ? new AudioException(exception.getMessage()) : null);
+            }
+
+            /**
+             * Passes tracks to the callback, finishing the stream if it couldn't take all of them
+             *
+             * @param tracks The tracks to pass
+             * @return True if every track was taken and the stream still needs finishing
+             */
+            private boolean deliver(List<AudioTrack> tracks) {
+                if (tracks.isEmpty())
+                    return true;
+
+                try {
+                    int added = callback.tracksLoaded(tracks);
+                    total.addAndGet(added);
+                    if (added == tracks.size())
+                        return true;
+                    callback.finished(total.get(), null);
+                } catch (YuiException e) {
+                    callback.finished(total.get(), e);
+                }
+                stopped.set(true);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Converts a query into the key used to share loads, so different links to the same video share a load
+     *
+     * @param query The query to convert
+     * @return The key for the query
+     */
+    public static String canonicalQuery(String query) {
+        String trimmed = query.trim();
+        if (trimmed.startsWith("ytsearch:"))
+            return "ytsearch:" + trimmed.substring(9).trim().replaceAll("\\s+", " ").toLowerCase();
+
+        if (trimmed.contains("youtu")) {
+            String videoId = PlaylistUtils.getYoutubeVideoId(trimmed);
+            String playlistId = PlaylistUtils.getYoutubePlaylistId(trimmed);
+            if (videoId != null || playlistId != null)
+                return String.format("youtube:%s:%s", (videoId == null) ? "" : videoId, (playlistId == null) ? "" : playlistId);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Copies tracks so each caller gets tracks they can play
+     *
+     * @param tracks The tracks to copy
+     * @return The copies
+     */
+    private static List<AudioTrack> cloneTracks(List<AudioTrack> tracks) {
+        List<AudioTrack> clones = new ArrayList<>(tracks.size());
+        for (AudioTrack track : tracks)
+            clones.add(track.makeClone());
+        return clones;
+    }
+
+    public static long getStartedQueries() {
+        return startedQueries.get();
+    }
+
+    public static long getCoalescedQueries() {
+        return coalescedQueries.get();
+    }
+
+    /**
+     * Records how long Lava Player took to give us the result of a load
+     *
+     * @param submitted When the load was submitted, from System#nanoTime
+     */
+    private static void recordLoad(long submitted) {
+        AudioStats.global.recordLoad(System.nanoTime() - submitted);
+    }
+
+    /**
+     * Remembers a failed load so it fails fast next time.
+     * Only common failures, like unavailable videos, are remembered. Faults and suspicious failures are usually on our
+     * side or temporary, so the query is tried again as normal.
+     *
+     * @param query     The query which failed
+     * @param exception Why it failed
+     */
+    private static void recordFailure(String query, FriendlyException exception) {
+        if (exception.severity == FriendlyException.Severity.COMMON)
+            Misty.failedQueries.recordFailure(query, exception.getMessage());
+    }
+
+    /**
+     * Checks if a query recently failed and shouldn't be loaded again yet
+     *
+     * @param query The query to check
+     * @return The error to fail with, null if the query can be loaded
+     */
+    private static AudioException checkFailedQuery(String query) {
+        FailedQuery failedQuery = Misty.failedQueries.getBlocked(query);
+        if (failedQuery == null)
+            return null;
+        return new LoadFailedException(failedQuery.reason);
     }
 
 }
@@ -0,0 +1,143 @@
+package sh.niall.misty.utils.audio;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
+import sh.niall.misty.utils.audio.helpers.FailedQuery;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failed Query Cache
+ * Remembers queries which Lava Player couldn't load so they fail fast instead of being loaded again.
+ * Queries are keyed by AudioUtils#canonicalQuery, so different links to the same video share an entry.
+ * Each failure doubles how long we wait before trying again. Entries are written through to the failedQueries collection
+ * so they survive a restart, and are removed by a TTL index once they've been quiet for long enough.
+ * Lookups only read memory, if more than maxEntries queries are failing the least recently used are forgotten early.
+ */
+public class FailedQueryCache {
+
+    private final MongoCollection<Document> db = Misty.database.getCollection("failedQueries");
+    private final Map<String, FailedQuery> failures;
+    private final Logger logger = LoggerFactory.getLogger(FailedQueryCache.class);
+
+    // Settings
+    public static long baseBackoffSeconds = TimeUnit.MINUTES.toSeconds(5);
+    public static long maxBackoffSeconds = TimeUnit.DAYS.toSeconds(7);
+    public static long keepDays = 30;
+    private static int maxEntries = 10000;
+
+    public FailedQueryCache() {
+        failures = new LinkedHashMap<String, FailedQuery>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FailedQuery> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        // Load every failure which hasn't expired, so queries never need to check the database
+        try {
+            for (Document document : db.find(Filters.gt("expiresAt", new Date())).sort(Sorts.descending("retryAt")).limit(maxEntries)) {
+                FailedQuery failedQuery = new FailedQuery(document);
+                failures.put(failedQuery.query, failedQuery);
+            }
+        } catch (Exception e) {
+            this.logger.warn("Failed to load the failed query cache", e);
+        }
+    }
+
+    /**
+     * Gets the failure for a query if we shouldn't try it again yet
+     *
+     * @param query The query to check
+     * @return The failure, null if the query can be loaded
+     */
+    public FailedQuery getBlocked(String query) {
+        FailedQuery failedQuery = lookup(AudioUtils.canonicalQuery(query));
+        if (failedQuery == null || failedQuery.retryAt <= Instant.now().getEpochSecond())
+            return null;
+        return failedQuery;
+    }
+
+    /**
+     * Gets how many times in a row a query has failed
+     *
+     * @param query The query to check
+     * @return The amount of failures, 0 if it hasn't failed
+     */
+    public int getFailures(String query) {
+        FailedQuery failedQuery = lookup(AudioUtils.canonicalQuery(query));
+        return (failedQuery == null) ? 0 : failedQuery.failures;
+    }
+
+    /**
+     * Finds the failure for a query. Memory is the source of truth, every change is written through to the database.
+     *
+     * @param key The canonical query
+     * @return The failure, null if the query hasn't failed
+     */
+    private synchronized FailedQuery lookup(String key) {
+        return failures.get(key);
+    }
+
+    /**
+     * Records a failed load, backing off exponentially from the previous failure
+     *
+     * @param query  The query which failed
+     * @param reason Why it failed, shown to users when the query fails fast
+     */
+    public void recordFailure(String query, String reason) {
+        String key = AudioUtils.canonicalQuery(query);
+        FailedQuery previousFailure = lookup(key);
+        int previous = (previousFailure == null) ? 0 : previousFailure.failures;
+        long now = Instant.now().getEpochSecond();
+        long backoff = Math.min(maxBackoffSeconds, baseBackoffSeconds << Math.min(previous, 20));
+        FailedQuery failedQuery = new FailedQuery(key, reason, previous + 1, now + backoff);
+        synchronized (this) {
+            failures.put(key, failedQuery);
+        }
+
+        try {
+            Document document = db.findOneAndUpdate(
+                    Filters.eq("query", key),
+                    new Document("$set", new Document("reason", reason)
+                            .append("retryAt", failedQuery.retryAt)
+                            .append("expiresAt", new Date(TimeUnit.SECONDS.toMillis(failedQuery.retryAt + TimeUnit.DAYS.toSeconds(keepDays)))))
+                            .append("$max", new Document("failures", failedQuery.failures)),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)
+            );
+            this.logger.info(String.format("Query %s failed %s times, retrying in %ss: %s", query, document.getInteger("failures"), backoff, reason));
+        } catch (Exception e) {
+            this.logger.warn("Failed to store a failed query", e);
+        }
+    }
+
+    /**
+     * Forgets a query after it loads successfully
+     *
+     * @param query The query which loaded
+     */
+    public void recordSuccess(String query) {
+        String key = AudioUtils.canonicalQuery(query);
+        synchronized (this) {
+            if (failures.remove(key) == null)
+                return;
+        }
+
+        try {
+            db.deleteOne(Filters.eq("query", key));
+        } catch (Exception e) {
+            this.logger.warn("Failed to remove a failed query", e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package sh.niall.misty.utils.audio;
+
+import sh.niall.misty.utils.audio.helpers.TrackRequest;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Track Queue
+ * The songs waiting to be played in a guild, in order.
+ * Songs are kept in an array and a Fenwick tree counts which slots still hold a queued song, so positional lookups and
+ * removals are O(log n). Taking the next song just moves the head forward, and removed slots are reclaimed when the
+ * array is compacted.
+ * Not thread safe, the AudioGuild guards it with its own lock.
+ */
+public class TrackQueue {
+
+    // Slot states. Slots before the head are never read, so popped slots don't need to leave the tree
+    private static final byte EMPTY = 0;
+    private static final byte QUEUED = 1;
+
+    private TrackRequest[] tracks;
+    private byte[] states;
+    private int[] tree;
+    private int head;
+    private int tail;
+    private int size;
+    private List<TrackRequest> snapshot = Collections.emptyList();
+
+    public TrackQueue() {
+        rebuild(Collections.emptyList(), 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a song to the end of the queue
+     *
+     * @param trackRequest The song to add
+     */
+    public void add(TrackRequest trackRequest) {
+        if (tail == tracks.length)
+            rebuild(snapshot(), 0);
+
+        tracks[tail] = trackRequest;
+        states[tail] = QUEUED;
+        update(tail, 1);
+        tail++;
+        size++;
+        snapshot = null;
+    }
+
+    /**
+     * Adds a song to the front of the queue
+     *
+     * @param trackRequest The song to add
+     */
+    public void addFirst(TrackRequest trackRequest) {
+        if (head == 0)
+            rebuild(snapshot(), 1);
+
+        head--;
+        // Slots we've moved past are still counted unless they were removed
+        if (states[head] == EMPTY)
+            update(head, 1);
+        tracks[head] = trackRequest;
+        states[head] = QUEUED;
+        size++;
+        snapshot = null;
+    }
+
+    /**
+     * Takes the song at the front of the queue
+     *
+     * @return The song, null if the queue is empty
+     */
+    public TrackRequest poll() {
+        if (size == 0)
+            return null;
+
+        TrackRequest trackRequest = tracks[head];
+        tracks[head] = null;
+        head++;
+        size--;
+        skipRemoved();
+        snapshot = null;
+        return trackRequest;
+    }
+
+    /**
+     * Gets the song at a position in the queue
+     *
+     * @param index The position, starting from 0
+     * @return The song
+     * @throws IndexOutOfBoundsException Thrown if the position isn't in the queue
+     */
+    public TrackRequest get(int index) {
+        return tracks[slotOf(index)];
+    }
+
+    /**
+     * Removes the song at a position in the queue
+     *
+     * @param index The position, starting from 0
+     * @return The song removed
+     * @throws IndexOutOfBoundsException Thrown if the position isn't in the queue
+     */
+    public TrackRequest remove(int index) {
+        int slot = slotOf(index);
+        TrackRequest trackRequest = tracks[slot];
+        tracks[slot] = null;
+        states[slot] = EMPTY;
+        update(slot, -1);
+        size--;
+        if (slot == head)
+            skipRemoved();
+        snapshot = null;
+        return trackRequest;
+    }
+
+    /**
+     * Removes songs from the front of the queue
+     *
+     * @param count How many songs to remove
+     */
+    public void skip(int count) {
+        if (count <= 0)
+            return;
+        if (count >= size) {
+            clear();
+            return;
+        }
+
+        int slot = slotOf(count);
+        Arrays.fill(tracks, head, slot, null);
+        head = slot;
+        size -= count;
+        snapshot = null;
+    }
+
+    /**
+     * Removes every song which matches the filter
+     *
+     * @param filter The filter to match
+     * @return How many songs were removed
+     */
+    public int removeIf(Predicate<TrackRequest> filter) {
+        List<TrackRequest> kept = new ArrayList<>(size);
+        for (TrackRequest trackRequest : snapshot()) {
+            if (!filter.test(trackRequest))
+                kept.add(trackRequest);
+        }
+
+        int removed = size - kept.size();
+        if (removed != 0)
+            rebuild(kept, 0);
+        return removed;
+    }
+
+    /**
+     * Removes songs which are already queued, keeping the first request for each URI
+     *
+     * @return How many songs were removed
+     */
+    public int removeDuplicates() {
+        Set<String> seen = new HashSet<>();
+        return removeIf(trackRequest -> !seen.add(trackRequest.uri));
+    }
+
+    /**
+     * Removes every song
+     */
+    public void clear() {
+        rebuild(Collections.emptyList(), 0);
+    }
+
+    /**
+     * Gets the songs in order. The list can't be changed and is reused until the queue changes.
+     *
+     * @return The queued songs
+     */
+    public List<TrackRequest> snapshot() {
+        if (snapshot == null) {
+            List<TrackRequest> list = new ArrayList<>(size);
+            for (int slot = head; slot < tail; slot++) {
+                if (states[slot] == QUEUED)
+                    list.add(tracks[slot]);
+            }
+            snapshot = Collections.unmodifiableList(list);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Moves the head past removed slots, each slot is only passed once so this is O(1) on average
+     */
+    private void skipRemoved() {
+        while (head < tail && states[head] == EMPTY)
+            head++;
+    }
+
+    /**
+     * Finds the slot holding a position in the queue
+     *
+     * @param index The position, starting from 0
+     * @return The slot
+     */
+    private int slotOf(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of the queue");
+
+        // Slots before the head may still be counted, so look past them
+        int target = prefix(head) + index + 1;
+        int slot = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step != 0; step >>= 1) {
+            int next = slot + step;
+            if (next < tree.length && tree[next] < target) {
+                slot = next;
+                target -= tree[next];
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Counts the queued slots before a slot
+     *
+     * @param slot The slot to count up to
+     * @return The amount of queued slots
+     */
+    private int prefix(int slot) {
+        int total = 0;
+        for (int i = slot; i > 0; i -= i & -i)
+            total += tree[i];
+        return total;
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    /**
+     * Copies the songs into new arrays, dropping removed slots
+     *
+     * @param songs The songs to keep, in order
+     * @param gap   How many free slots to leave before the first song
+     */
+    private void rebuild(List<TrackRequest> songs, int gap) {
+        int capacity = Math.max(16, (songs.size() + gap) * 2);
+        TrackRequest[] newTracks = new TrackRequest[capacity];
+        byte[] newStates = new byte[capacity];
+        int[] newTree = new int[capacity + 1];
+
+        int slot = gap;
+        for (TrackRequest trackRequest : songs) {
+            newTracks[slot] = trackRequest;
+            newStates[slot] = QUEUED;
+            newTree[slot + 1] = 1;
+            slot++;
+        }
+
+        // Build the tree in linear time by pushing each node's total up to its parent
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity)
+                newTree[parent] += newTree[i];
+        }
+
+        tracks = newTracks;
+        states = newStates;
+        tree = newTree;
+        head = gap;
+        tail = slot;
+        size = songs.size();
+        snapshot = null;
+    }
+}
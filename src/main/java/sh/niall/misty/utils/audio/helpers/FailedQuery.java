@@ -0,0 +1,27 @@
+package sh.niall.misty.utils.audio.helpers;
+
+import org.bson.Document;
+
+/*
+Entry container for the FailedQueryCache
+ */
+public class FailedQuery {
+    public final String query;
+    public final String reason;
+    public final int failures;
+    public final long retryAt;
+
+    public FailedQuery(String query, String reason, int failures, long retryAt) {
+        this.query = query;
+        this.reason = reason;
+        this.failures = failures;
+        this.retryAt = retryAt;
+    }
+
+    public FailedQuery(Document document) {
+        this.query = document.getString("query");
+        this.reason = document.getString("reason");
+        this.failures = document.getInteger("failures");
+        this.retryAt = document.getLong("retryAt");
+    }
+}
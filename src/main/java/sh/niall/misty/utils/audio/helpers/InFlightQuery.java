@@ -0,0 +1,47 @@
+package sh.niall.misty.utils.audio.helpers;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+A query which is still loading, shared by everyone waiting on the same query
+ */
+public class InFlightQuery {
+    public final CompletableFuture<List<AudioTrack>> future;
+    private final AtomicInteger waiters;
+
+    /**
+     * @param future  The future which completes with the loaded tracks
+     * @param waiters How many callers are already waiting
+     */
+    public InFlightQuery(CompletableFuture<List<AudioTrack>> future, int waiters) {
+        this.future = future;
+        this.waiters = new AtomicInteger(waiters);
+    }
+
+    /**
+     * Adds a caller to the query. Once everyone has left the load is being cancelled, so nobody can join it again.
+     *
+     * @return False if the query has already finished or been abandoned and can't be joined
+     */
+    public boolean join() {
+        int current;
+        do {
+            current = waiters.get();
+            if (current <= 0 || future.isDone())
+                return false;
+        } while (!waiters.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Removes a caller which gave up on the query, the load is cancelled once nobody is waiting on it
+     */
+    public void leave() {
+        if (waiters.decrementAndGet() <= 0)
+            future.cancel(true);
+    }
+}
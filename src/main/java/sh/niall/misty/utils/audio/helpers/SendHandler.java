@@ -3,6 +3,7 @@ package sh.niall.misty.utils.audio.helpers;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 import net.dv8tion.jda.api.audio.AudioSendHandler;
+import sh.niall.misty.utils.audio.AudioStats;
 
 import javax.annotation.Nullable;
 import java.nio.Buffer;
@@ -10,20 +11,37 @@ import java.nio.ByteBuffer;
 
 public class SendHandler implements AudioSendHandler {
 
-    private final AudioPlayer audioPlayer;
+    private volatile AudioPlayer audioPlayer;
     private final ByteBuffer buffer;
     private final MutableAudioFrame frame;
+    private final AudioStats audioStats;
 
-    public SendHandler(AudioPlayer audioPlayer) {
+    public SendHandler(AudioPlayer audioPlayer, AudioStats audioStats) {
         this.audioPlayer = audioPlayer;
+        this.audioStats = audioStats;
+        // Heap backed, JDA copies buffers without a backing array into a new array for every packet
         this.buffer = ByteBuffer.allocate(1024);
         this.frame = new MutableAudioFrame();
         this.frame.setBuffer(buffer);
     }
 
+    /**
+     * Switches which player frames are provided from, used to swap to a song which was loaded ahead of time
+     *
+     * @param audioPlayer The player to provide frames from
+     */
+    public void setAudioPlayer(AudioPlayer audioPlayer) {
+        this.audioPlayer = audioPlayer;
+    }
+
     @Override
     public boolean canProvide() {
-        return audioPlayer.provide(frame);
+        AudioPlayer audioPlayer = this.audioPlayer;
+        boolean provided = audioPlayer.provide(frame);
+        audioStats.recordFrame(provided, !provided && audioPlayer.getPlayingTrack() != null && !audioPlayer.isPaused());
+        if (provided && audioPlayer.getVolume() != 100)
+            audioStats.recordTranscodedFrame();
+        return provided;
     }
 
     @Nullable
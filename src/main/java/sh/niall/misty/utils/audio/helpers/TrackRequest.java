@@ -1,18 +1,148 @@
 package sh.niall.misty.utils.audio.helpers;
 
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import sh.niall.misty.utils.audio.interfaces.TrackResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Track Request
  * Class used to hold tracks in a queue.
+ * Songs waiting in the queue only keep the encoded track and the info needed to display them, the AudioTrack is
+ * decoded again just before it's played.
+ * Songs from playlists start out as just a URL and are resolved through a TrackResolver when they're close to playing.
  */
 public class TrackRequest {
-    public AudioTrack audioTrack;
-    public long requestAuthor;
+    public final long requestAuthor;
+    public final String uri;
+    public final long duration;
+
+    // Filled in once the song is resolved, the title is the URL until then
+    public volatile String title;
+    public volatile String identifier;
+    public volatile String sourceName;
+
+    // Guarded by this, only one of them is set
+    private AudioTrack audioTrack;
+    private byte[] encodedTrack;
+    private TrackResolver resolver;
+    private CompletableFuture<AudioTrack> resolving;
 
     public TrackRequest(AudioTrack audioTrack, long requestAuthor) {
+        this.requestAuthor = requestAuthor;
+        this.uri = audioTrack.getInfo().uri.intern();
+        this.duration = audioTrack.getInfo().length;
         this.audioTrack = audioTrack;
+        fillInfo(audioTrack);
+    }
+
+    /**
+     * Creates a request which is resolved when it's close to playing
+     *
+     * @param url           The URL of the song
+     * @param duration      The duration of the song if it's known
+     * @param requestAuthor The user who requested the song
+     * @param resolver      Used to get the AudioTrack for the URL
+     */
+    public TrackRequest(String url, long duration, long requestAuthor, TrackResolver resolver) {
         this.requestAuthor = requestAuthor;
+        this.uri = url;
+        this.duration = duration;
+        this.title = url;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Gets the AudioTrack if it's currently decoded
+     *
+     * @return The AudioTrack, null if the request is compacted
+     */
+    public synchronized AudioTrack getAudioTrack() {
+        return audioTrack;
+    }
+
+    /**
+     * Gets the AudioTrack, decoding it if the request is compacted or resolving it if it's only a URL.
+     * Resolving only happens once, later calls share the same future.
+     *
+     * @param audioPlayerManager The manager used to decode the track
+     * @return A future which completes with the AudioTrack
+     */
+    public synchronized CompletableFuture<AudioTrack> resolve(AudioPlayerManager audioPlayerManager) {
+        if (audioTrack != null)
+            return CompletableFuture.completedFuture(audioTrack);
+
+        if (encodedTrack != null) {
+            CompletableFuture<AudioTrack> decoded = new CompletableFuture<>();
+            try {
+                AudioTrack decodedTrack = audioPlayerManager.decodeTrack(new MessageInput(new ByteArrayInputStream(encodedTrack))).decodedTrack;
+                if (decodedTrack == null)
+                    throw new IOException("The track for " + uri + " couldn't be decoded");
+                audioTrack = decodedTrack;
+                encodedTrack = null;
+                decoded.complete(audioTrack);
+            } catch (IOException e) {
+                decoded.completeExceptionally(e);
+            }
+            return decoded;
+        }
+
+        if (resolving == null) {
+            resolving = resolver.resolveTrack(uri).thenApply(resolvedTrack -> {
+                synchronized (this) {
+                    audioTrack = resolvedTrack;
+                    resolving = null;
+                }
+                fillInfo(resolvedTrack);
+                return resolvedTrack;
+            });
+        }
+        return resolving;
+    }
+
+    /**
+     * Swaps the AudioTrack for a fresh copy so the song can be played again
+     *
+     * @return The new AudioTrack, null if the song hasn't been resolved
+     */
+    public synchronized AudioTrack cloneAudioTrack() {
+        if (audioTrack == null)
+            return null;
+        audioTrack = audioTrack.makeClone();
+        return audioTrack;
+    }
+
+    /**
+     * Encodes the AudioTrack and drops it, so the request only holds a small byte array while it waits in the queue.
+     * Requests which can't be encoded keep their AudioTrack.
+     *
+     * @param audioPlayerManager The manager used to encode the track
+     */
+    public synchronized void compact(AudioPlayerManager audioPlayerManager) {
+        if (audioTrack == null)
+            return;
+
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            audioPlayerManager.encodeTrack(new MessageOutput(outputStream), audioTrack);
+            encodedTrack = outputStream.toByteArray();
+            audioTrack = null;
+        } catch (IOException | RuntimeException ignored) {
+        }
+    }
+
+    private void fillInfo(AudioTrack audioTrack) {
+        AudioTrackInfo info = audioTrack.getInfo();
+        this.title = info.title.intern();
+        this.identifier = info.identifier.intern();
+        this.sourceName = audioTrack.getSourceManager().getSourceName().intern();
     }
 
     // We match based on the URL
@@ -21,6 +151,11 @@ public class TrackRequest {
         if (!(obj instanceof TrackRequest))
             return false;
 
-        return ((TrackRequest) obj).audioTrack.getInfo().uri.equals(this.audioTrack.getInfo().uri);
+        return ((TrackRequest) obj).uri.equals(this.uri);
+    }
+
+    @Override
+    public int hashCode() {
+        return uri.hashCode();
     }
 }
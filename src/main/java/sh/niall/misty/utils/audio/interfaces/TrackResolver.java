@@ -0,0 +1,9 @@
+package sh.niall.misty.utils.audio.interfaces;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface TrackResolver {
+    CompletableFuture<AudioTrack> resolveTrack(String url);
+}
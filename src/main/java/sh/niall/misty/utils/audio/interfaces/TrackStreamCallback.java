@@ -0,0 +1,19 @@
+package sh.niall.misty.utils.audio.interfaces;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import sh.niall.yui.exceptions.YuiException;
+
+import java.util.List;
+
+public interface TrackStreamCallback {
+    /**
+     * Takes a batch of loaded tracks. Taking fewer than were given stops the stream.
+     *
+     * @param tracks The tracks loaded
+     * @return How many of the tracks were taken
+     * @throws YuiException Thrown if none of the tracks could be taken
+     */
+    int tracksLoaded(List<AudioTrack> tracks) throws YuiException;
+
+    void finished(int total, YuiException error);
+}
@@ -11,6 +11,17 @@ public class Config {
 
     String mongoURL;
 
+    long songCacheMemoryBytes = 32 * 1024 * 1024;
+    int songCacheRefreshPerMinute = 30;
+    int songCacheRefreshConcurrency = 4;
+    int queueLookahead = 2;
+    boolean nonAllocatingAudio = true;
+    int audioFrameBufferMs = 5000;
+    int preloadSeconds = 5;
+    int maxTranscodingGuilds = -1;
+
+    int shardCount = 1;
+
     public String getDiscordErrorImage() {
         return discordErrorImage;
     }
@@ -30,4 +41,40 @@ public class Config {
     public String getBackupPrefix() {
         return backupPrefix;
     }
+
+    public long getSongCacheMemoryBytes() {
+        return songCacheMemoryBytes;
+    }
+
+    public int getSongCacheRefreshPerMinute() {
+        return songCacheRefreshPerMinute;
+    }
+
+    public int getSongCacheRefreshConcurrency() {
+        return songCacheRefreshConcurrency;
+    }
+
+    public int getQueueLookahead() {
+        return queueLookahead;
+    }
+
+    public boolean isNonAllocatingAudio() {
+        return nonAllocatingAudio;
+    }
+
+    public int getAudioFrameBufferMs() {
+        return audioFrameBufferMs;
+    }
+
+    public int getPreloadSeconds() {
+        return preloadSeconds;
+    }
+
+    public int getMaxTranscodingGuilds() {
+        return maxTranscodingGuilds;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
 }
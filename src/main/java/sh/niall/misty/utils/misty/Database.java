@@ -1,18 +1,34 @@
 package sh.niall.misty.utils.misty;
 
 
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOptions;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sh.niall.misty.Misty;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class Database {
 
     MongoClient mongoClient;
     MongoDatabase database;
+    private Logger logger = LoggerFactory.getLogger(Database.class);
 
     public Database() {
         LoggerFactory.getLogger(Database.class).info("Connecting to Mongo...");
@@ -24,4 +40,154 @@ public class Database {
     public MongoCollection<Document> getCollection(String name) {
         return database.getCollection(name);
     }
+
+    /**
+     * Creates the indexes used by Misty's queries. Mongo skips indexes which already exist.
+     */
+    public void ensureIndexes() {
+        this.logger.info("Checking database indexes...");
+
+        // Song Cache
+        createIndex("songCache", Indexes.ascending("url"), true);
+        createIndex("songCache", Indexes.ascending("expires"), false);
+        createIndex("songCache", Indexes.compoundIndex(Indexes.descending("lastPlayed"), Indexes.ascending("expires")), false);
+
+        // Reminders
+        createIndex("reminders", Indexes.ascending("timestamp"), false);
+        createIndex("reminders", Indexes.ascending("author"), false);
+
+        // Playlists, the search name is unique per author
+        createIndex("playlists", Indexes.ascending("author", "searchName"), true);
+        createIndex("playlists", Indexes.ascending("editors"), false);
+
+        // Playlist Entries, songs are read in order and a song can only be in a playlist once
+        createIndex("playlistEntries", Indexes.ascending("playlist", "position"), false);
+        createIndex("playlistEntries", Indexes.ascending("playlist", "url"), true);
+        createIndex("playlistEntries", Indexes.ascending("url", "duration"), false);
+
+        // Tags, the search name is unique per guild
+        createIndex("tags", Indexes.ascending("guild", "searchName"), true);
+        createIndex("tags", Indexes.ascending("author", "guild"), false);
+
+        // User Settings
+        createIndex("users", Indexes.ascending("userId"), true);
+
+        // Failed Queries, removed by Mongo once they expire
+        createIndex("failedQueries", Indexes.ascending("query"), true);
+        createExpiryIndex("failedQueries", "expiresAt");
+
+        // Search Cache, removed by Mongo once they expire
+        createIndex("searchCache", Indexes.ascending("query"), true);
+        createExpiryIndex("searchCache", "expiresAt");
+    }
+
+    /**
+     * Logs the query plan of the hot queries, warning if any of them scan the whole collection
+     */
+    public void explainQueries() {
+        explain("songCache", new Document("url", ""));
+        explain("songCache", new Document("expires", new Document("$lte", 0L)));
+        explain("reminders", new Document("timestamp", new Document("$lt", 0L)));
+        explain("reminders", new Document("author", 0L));
+        explain("playlists", new Document("author", 0L).append("searchName", ""));
+        explain("playlists", new Document("editors", 0L));
+        explain("playlistEntries", new Document("playlist", new ObjectId()));
+        explain("playlistEntries", new Document("playlist", new ObjectId()).append("url", ""));
+        explain("playlistEntries", new Document("url", "").append("duration", 0L));
+        explain("tags", new Document("guild", 0L).append("searchName", ""));
+        explain("tags", new Document("author", 0L).append("guild", 0L));
+        explain("users", new Document("userId", 0L));
+        explain("failedQueries", new Document("query", ""));
+        explain("searchCache", new Document("query", ""));
+    }
+
+    /**
+     * Gets the version a collection has been migrated to
+     *
+     * @param collection The collection to check
+     * @return The stored version, 0 if it has never been migrated
+     */
+    public int getSchemaVersion(String collection) {
+        Document document = getCollection("migrations").find(Filters.eq("_id", collection)).first();
+        return (document == null) ? 0 : document.getInteger("version", 0);
+    }
+
+    /**
+     * Records that a collection has been migrated, so the migration doesn't run again
+     *
+     * @param collection The collection which was migrated
+     * @param version    The version it was migrated to
+     */
+    public void setSchemaVersion(String collection, int version) {
+        getCollection("migrations").updateOne(
+                Filters.eq("_id", collection),
+                new Document("$set", new Document("version", version).append("migratedAt", Instant.now().getEpochSecond())),
+                new UpdateOptions().upsert(true)
+        );
+    }
+
+    /**
+     * Creates an index. If a unique index can't be created because of existing duplicates, a normal index is created
+     * instead so lookups are still fast.
+     *
+     * @param collection The collection to index
+     * @param keys       The keys to index
+     * @param unique     If the index should be unique
+     */
+    private void createIndex(String collection, Bson keys, boolean unique) {
+        try {
+            getCollection(collection).createIndex(keys, new IndexOptions().unique(unique));
+        } catch (MongoException e) {
+            if (!unique || ErrorCategory.fromErrorCode(e.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                this.logger.error(String.format("Failed to create an index on %s", collection), e);
+                return;
+            }
+
+            this.logger.warn(String.format("%s has duplicate entries, creating a non unique index instead", collection));
+            createIndex(collection, keys, false);
+        }
+    }
+
+    /**
+     * Creates a TTL index, Mongo removes documents once the date in the field has passed
+     *
+     * @param collection The collection to index
+     * @param field      The date field to expire on
+     */
+    private void createExpiryIndex(String collection, String field) {
+        try {
+            getCollection(collection).createIndex(Indexes.ascending(field), new IndexOptions().expireAfter(0L, TimeUnit.SECONDS));
+        } catch (MongoException e) {
+            this.logger.error(String.format("Failed to create an index on %s", collection), e);
+        }
+    }
+
+    /**
+     * Logs the winning plan of a query
+     *
+     * @param collection The collection to query
+     * @param filter     The filter to explain
+     */
+    private void explain(String collection, Document filter) {
+        try {
+            Document result = database.runCommand(new Document("explain", new Document("find", collection).append("filter", filter))
+                    .append("verbosity", "queryPlanner"));
+
+            // Walk down the plan, each stage feeds into the one above it
+            List<String> stages = new ArrayList<>();
+            Document stage = result.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+            while (stage != null) {
+                stages.add(stage.getString("stage"));
+                stage = stage.get("inputStage", Document.class);
+            }
+
+            String plan = String.format("%s %s: %s", collection, filter.keySet(), String.join(" <- ", stages));
+            if (stages.contains("COLLSCAN"))
+                this.logger.warn("Query is scanning the whole collection! " + plan);
+            else
+                this.logger.info(plan);
+        } catch (MongoCommandException | NullPointerException | ClassCastException e) {
+            this.logger.warn(String.format("Failed to explain a query on %s", collection), e);
+        }
+    }
 }
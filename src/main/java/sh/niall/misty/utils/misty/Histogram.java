@@ -0,0 +1,77 @@
+package sh.niall.misty.utils.misty;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram
+ * Counts millisecond values into fixed buckets. Recording doesn't lock or allocate, so it's safe on the audio path.
+ */
+public class Histogram {
+
+    // Upper bound of each bucket in milliseconds, the last bucket holds everything larger
+    private static final long[] bounds = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(bounds.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value
+     *
+     * @param millis The value in milliseconds
+     */
+    public void record(long millis) {
+        int bucket = 0;
+        while (bucket < bounds.length && millis > bounds[bucket])
+            bucket++;
+
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(millis);
+        long currentMax;
+        while (millis > (currentMax = max.get()) && !max.compareAndSet(currentMax, millis)) ;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long recorded = count.get();
+        return (recorded == 0) ? 0 : (double) total.get() / recorded;
+    }
+
+    /**
+     * Gets an estimate of a percentile, rounded up to the bucket it falls in
+     *
+     * @param percentile The percentile between 0-100
+     * @return The upper bound of the bucket in milliseconds, the max for the last bucket
+     */
+    public long getPercentile(double percentile) {
+        long recorded = count.get();
+        if (recorded == 0)
+            return 0;
+
+        long target = (long) Math.ceil(recorded * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < bounds.length; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= target)
+                return Math.min(bounds[bucket], max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        if (getCount() == 0)
+            return "N/A";
+        return String.format("p50 %sms, p99 %sms, max %sms (%s)", getPercentile(50), getPercentile(99), getMax(), getCount());
+    }
+}
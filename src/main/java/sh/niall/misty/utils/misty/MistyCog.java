@@ -1,97 +1,107 @@
 package sh.niall.misty.utils.misty;
 
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageEmbed;
-import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
-import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
 import sh.niall.misty.utils.settings.UserSettings;
+import sh.niall.misty.utils.ui.interactions.Confirmation;
+import sh.niall.misty.utils.ui.interactions.interfaces.ConfirmationCallback;
+import sh.niall.misty.utils.ui.interactions.interfaces.InteractionCallback;
 import sh.niall.yui.cogs.cog.Cog;
 import sh.niall.yui.cogs.commands.context.Context;
-import sh.niall.yui.exceptions.CommandException;
 import sh.niall.yui.exceptions.YuiException;
 
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
 public class MistyCog extends Cog {
 
     /**
-     * Asks the user to confirm an action
+     * Asks the user to confirm an action, running the callback once they answer
      *
      * @param ctx      The command context
      * @param question The question to ask
-     * @return True if they confirm, false if they don't
-     * @throws CommandException Thrown if the user didn't respond
+     * @param callback Called with their answer
      */
-    public boolean sendConfirmation(Context ctx, String question) throws YuiException {
-        EmbedBuilder embedBuilder = new EmbedBuilder();
-        embedBuilder.setTitle("Confirmation!");
-        embedBuilder.setDescription(question);
-        embedBuilder.setColor(Color.YELLOW);
-        embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
-        return sendConfirmation(ctx, embedBuilder.build());
+    public void confirm(Context ctx, String question, ConfirmationCallback callback) {
+        confirm(ctx, buildConfirmation(ctx, question), callback);
     }
 
     /**
-     * Asks the user to confirm an action
+     * Asks the user to confirm an action, running the callback once they answer
      *
-     * @param ctx   The command context
-     * @param embed The embed to send
-     * @return True if they confirm, false if they don't
-     * @throws CommandException Thrown if the user didn't respond
+     * @param ctx      The command context
+     * @param embed    The embed to send
+     * @param callback Called with their answer
      */
-    public boolean sendConfirmation(Context ctx, MessageEmbed embed) throws YuiException {
-        return sendConfirmation(ctx, embed, ctx.getAuthor().getIdLong());
+    public void confirm(Context ctx, MessageEmbed embed, ConfirmationCallback callback) {
+        confirm(ctx, embed, ctx.getAuthor().getIdLong(), callback);
     }
 
     /**
-     * Asks the user to confirm an action
+     * Asks a user to confirm an action without holding the thread, running the callback once they answer.
+     * Errors from the callback, or a timeout, are sent to the channel.
      *
-     * @param ctx    The command context
-     * @param embed  The embed to send
-     * @param target The user to ask
-     * @return True if they confirm, false if they don't
-     * @throws CommandException Thrown if the user didn't respond
+     * @param ctx      The command context
+     * @param embed    The embed to send
+     * @param target   The user to ask
+     * @param callback Called with their answer
      */
-    public boolean sendConfirmation(Context ctx, MessageEmbed embed, long target) throws YuiException {
-        Message message = ctx.send(embed);
-        message.addReaction("✅").complete();
-        message.addReaction("❌").complete();
-
-        GuildMessageReactionAddEvent reactionAddEvent = (GuildMessageReactionAddEvent) waitForEvent(
-                GuildMessageReactionAddEvent.class, check -> {
-                    GuildMessageReactionAddEvent e = (GuildMessageReactionAddEvent) check;
-                    return (e.getMember().getIdLong() == target) &&
-                            (e.getMessageIdLong() == message.getIdLong()) &&
-                            (e.getReactionEmote().getEmoji().equals("✅") || e.getReactionEmote().getEmoji().equals("❌"));
-                }, 15, TimeUnit.SECONDS
-        );
-
-        message.delete().queue();
-
-        if (reactionAddEvent == null)
-            throw new CommandException("Timed out waiting for conformation");
+    public void confirm(Context ctx, MessageEmbed embed, long target, ConfirmationCallback callback) {
+        whenAnswered(ctx, Confirmation.ask(ctx.getChannel(), embed, target), callback::run);
+    }
 
-        // Handle no logic
-        return !reactionAddEvent.getReactionEmote().getEmoji().equals("❌");
+    /**
+     * Runs the callback once an interaction completes, without holding the thread.
+     * Errors from the interaction or the callback are sent to the channel.
+     *
+     * @param ctx         The command context
+     * @param interaction The interaction to wait for
+     * @param callback    Called with the result
+     * @param <T>         The result type
+     */
+    public <T> void whenAnswered(Context ctx, CompletableFuture<T> interaction, InteractionCallback<T> callback) {
+        interaction.whenComplete((result, error) -> {
+            try {
+                if (error != null)
+                    throw (error instanceof CompletionException) ? error.getCause() : error;
+                callback.run(result);
+            } catch (YuiException e) {
+                ctx.sendq("⚠️ " + e.getMessage(), null);
+            } catch (Throwable e) {
+                LoggerFactory.getLogger(MistyCog.class).error("Interaction callback failed", e);
+                ctx.sendq("I don't know how to handle this error, please ask my developer for help!", null);
+            }
+        });
     }
 
     /**
      * Gets the users next message
      *
      * @param ctx The command context
-     * @return Their next message, null if they don't respond in time
+     * @return A future which completes with their next message, or null if they don't respond in time
      */
-    public String getNextMessage(Context ctx) throws YuiException {
-        GuildMessageReceivedEvent event = ((GuildMessageReceivedEvent) waitForEvent(
-                GuildMessageReceivedEvent.class,
-                check -> {
-                    GuildMessageReceivedEvent e = (GuildMessageReceivedEvent) check;
-                    return (e.getChannel().getIdLong() == ctx.getChannel().getIdLong()) && (e.getAuthor().getIdLong() == ctx.getAuthor().getIdLong());
-                }, 20, TimeUnit.SECONDS));
-        if (event == null)
-            return null;
-        return event.getMessage().getContentRaw();
+    public CompletableFuture<String> getNextMessage(Context ctx) {
+        return Misty.interactions.waitForMessage(ctx.getChannel().getIdLong(), ctx.getAuthor().getIdLong(), 20, TimeUnit.SECONDS)
+                .handle((message, error) -> (message == null) ? null : message.getContentRaw());
+    }
+
+    /**
+     * Creates the default confirmation embed
+     *
+     * @param ctx      The command context
+     * @param question The question to ask
+     * @return The confirmation embed
+     */
+    private MessageEmbed buildConfirmation(Context ctx, String question) {
+        EmbedBuilder embedBuilder = new EmbedBuilder();
+        embedBuilder.setTitle("Confirmation!");
+        embedBuilder.setDescription(question);
+        embedBuilder.setColor(Color.YELLOW);
+        embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
+        return embedBuilder.build();
     }
 }
@@ -0,0 +1,135 @@
+package sh.niall.misty.utils.misty;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.utils.SessionControllerAdapter;
+
+import javax.security.auth.login.LoginException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Shards
+ * Runs multiple gateway connections in one process and routes lookups to the shard which owns them.
+ * Each shard reads its own gateway connection, so events for one shard can't hold up another.
+ */
+public class Shards {
+
+    private final AtomicReferenceArray<JDA> shards;
+
+    /**
+     * Creates the shards without connecting them, so the instance can be published before any events arrive
+     *
+     * @param shardCount The number of shards to run
+     */
+    public Shards(int shardCount) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        this.shards = new AtomicReferenceArray<>(shardCount);
+    }
+
+    /**
+     * Builds and logs in every shard. Each shard can be looked up as soon as it's built.
+     *
+     * @param builder The builder to build each shard from
+     * @throws LoginException Thrown if a shard failed to log in
+     */
+    public void login(JDABuilder builder) throws LoginException {
+        // Share the session controller so the shards take turns identifying
+        builder.setSessionController(new SessionControllerAdapter());
+
+        for (int shardId = 0; shardId < shards.length(); shardId++) {
+            builder.useSharding(shardId, shards.length());
+            shards.set(shardId, builder.build());
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length();
+    }
+
+    /**
+     * Gets the shards which have been built so far
+     *
+     * @return The built shards
+     */
+    public List<JDA> getShards() {
+        List<JDA> built = new ArrayList<>(shards.length());
+        for (int shardId = 0; shardId < shards.length(); shardId++) {
+            JDA shard = shards.get(shardId);
+            if (shard != null)
+                built.add(shard);
+        }
+        return Collections.unmodifiableList(built);
+    }
+
+    /**
+     * Checks if every shard has connected and loaded its cache
+     *
+     * @return True if all shards are connected
+     */
+    public boolean isReady() {
+        for (int shardId = 0; shardId < shards.length(); shardId++) {
+            JDA shard = shards.get(shardId);
+            if (shard == null || shard.getStatus() != JDA.Status.CONNECTED)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the shard which owns a guild, using Discord's sharding formula
+     *
+     * @param guildId The guild id to route
+     * @return The shard for the guild, null if it hasn't been built yet
+     */
+    public JDA getShardForGuild(long guildId) {
+        return shards.get((int) ((guildId >>> 22) % shards.length()));
+    }
+
+    /**
+     * Gets a guild from the shard which owns it
+     *
+     * @param guildId The guild id to search for
+     * @return The guild, null if we can't see it
+     */
+    public Guild getGuildById(long guildId) {
+        JDA shard = getShardForGuild(guildId);
+        return (shard == null) ? null : shard.getGuildById(guildId);
+    }
+
+    /**
+     * Gets a text channel from any shard
+     *
+     * @param channelId The channel id to search for
+     * @return The channel, null if we can't see it
+     */
+    public TextChannel getTextChannelById(long channelId) {
+        for (JDA shard : getShards()) {
+            TextChannel channel = shard.getTextChannelById(channelId);
+            if (channel != null)
+                return channel;
+        }
+        return null;
+    }
+
+    /**
+     * Gets a user from any shard, users are only cached on the shards they share a guild with
+     *
+     * @param userId The user id to search for
+     * @return The user, null if we can't see them
+     */
+    public User getUserById(long userId) {
+        for (JDA shard : getShards()) {
+            User user = shard.getUserById(userId);
+            if (user != null)
+                return user;
+        }
+        return null;
+    }
+}
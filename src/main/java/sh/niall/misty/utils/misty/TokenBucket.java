@@ -0,0 +1,69 @@
+package sh.niall.misty.utils.misty;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token Bucket
+ * Limits how often something can happen, allowing short bursts up to the bucket capacity
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Creates a new full bucket
+     *
+     * @param capacity The most tokens the bucket can hold
+     * @param tokens   How many tokens are added each period
+     * @param period   The length of the period
+     * @param unit     The unit of the period
+     */
+    public TokenBucket(long capacity, long tokens, long period, TimeUnit unit) {
+        this.capacity = capacity;
+        this.tokensPerNano = (double) tokens / unit.toNanos(period);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting until one is available
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens--;
+                    return;
+                }
+                wait = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Takes a token if one is available
+     *
+     * @return True if a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1)
+            return false;
+        tokens--;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
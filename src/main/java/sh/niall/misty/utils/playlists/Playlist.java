@@ -1,10 +1,16 @@
 package sh.niall.misty.utils.playlists;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.*;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
 import sh.niall.misty.utils.playlists.containers.PlaylistSong;
 import sh.niall.misty.utils.playlists.enums.Permission;
 import sh.niall.yui.exceptions.CommandException;
@@ -14,6 +20,9 @@ import java.util.*;
 public class Playlist {
 
     private MongoCollection<Document> db;
+    private MongoCollection<Document> entries = Misty.database.getCollection("playlistEntries");
+    private static Logger logger = LoggerFactory.getLogger(Playlist.class);
+    private static int entriesSchemaVersion = 1;
     public long author;
     public String friendlyName;
     public String searchName;
@@ -22,7 +31,8 @@ public class Playlist {
     public String description;
     public List<Long> editors;
     public int plays;
-    public Map<String, PlaylistSong> songList = new HashMap<>();
+    private int songCount;
+    private long totalDuration;
     private Document originalDocument = null;
 
     /**
@@ -42,6 +52,8 @@ public class Playlist {
         this.description = "";
         this.editors = new ArrayList<>();
         this.plays = 0;
+        this.songCount = 0;
+        this.totalDuration = 0;
     }
 
     /**
@@ -93,12 +105,9 @@ public class Playlist {
         description = document.getString("description");
         editors = new ArrayList<>((List<Long>) document.get("editors"));
         plays = document.getInteger("plays");
+        songCount = ((Number) document.getOrDefault("songCount", 0)).intValue();
+        totalDuration = ((Number) document.getOrDefault("totalDuration", 0L)).longValue();
         originalDocument = document;
-
-        // Handle Song list
-        Document songListDoc = document.get("songList", Document.class);
-        for (Map.Entry<String, Object> entry : songListDoc.entrySet())
-            songList.put(entry.getKey(), new PlaylistSong((Document) entry.getValue()));
     }
 
     /**
@@ -122,7 +131,8 @@ public class Playlist {
     /**
      * Saves the playlist to the database
      * Inserts the document if it doesn't already exist
-     * Updates the current document using set if it does
+     * Updates the current document using set if it does.
+     * Songs are stored separately, see {@link #addSongs(List)} and {@link #removeSongs(Collection)}
      *
      * @throws CommandException Thrown if there was an issue with the database
      */
@@ -144,15 +154,16 @@ public class Playlist {
             document.append("description", this.description);
             document.append("editors", this.editors);
             document.append("plays", this.plays);
-            document.append("songList", new HashMap<String, Document>());
+            document.append("songCount", this.songCount);
+            document.append("totalDuration", this.totalDuration);
+            document.append("nextPosition", 0L);
             this.db.insertOne(document);
+            originalDocument = document;
             return;
         }
 
         try {
             // We're handling an existing playlist
-            ObjectId objectId = this.originalDocument.get("_id", ObjectId.class);
-
             if (!originalDocument.getLong("author").equals(this.author))
                 document.put("author", this.author);
 
@@ -177,17 +188,13 @@ public class Playlist {
             if (!originalDocument.get("editors").equals(this.editors))
                 document.put("editors", this.editors);
 
-            // Handle Song list
-            Set<String> oldUrlSet = originalDocument.get("songList", Document.class).keySet();
-            Set<String> newUrlSet = this.songList.keySet();
-            if (oldUrlSet.size() != newUrlSet.size()) {
-                Document storeList = new Document();
-                for (Map.Entry<String, PlaylistSong> song : this.songList.entrySet())
-                    storeList.put(song.getKey(), song.getValue().toDocument());
-                document.put("songList", storeList);
-            }
+            if (document.isEmpty())
+                return;
 
-            db.updateOne(Filters.eq("_id", objectId), new Document("$set", document));
+            db.updateOne(Filters.eq("_id", getId()), new Document("$set", document));
+
+            // Keep track of what's stored so saving again only sends new changes
+            originalDocument.putAll(document);
         } catch (Exception e) {
             e.printStackTrace();
             throw new CommandException("Failed to update the playlist, please report this to a developer.");
@@ -195,10 +202,237 @@ public class Playlist {
     }
 
     /**
-     * Deletes the playlist from the database
+     * Deletes the playlist and its songs from the database
      */
     public void delete() {
-        db.deleteOne(Filters.eq("_id", originalDocument.get("_id", ObjectId.class)));
+        db.deleteOne(Filters.eq("_id", getId()));
+        entries.deleteMany(Filters.eq("playlist", getId()));
+    }
+
+    /**
+     * Adds songs to the end of the playlist. Songs already in the playlist are skipped.
+     * Positions are reserved before inserting, so concurrent editors never overwrite each other.
+     *
+     * @param songs The songs to add, in order
+     * @return The songs which were added
+     * @throws CommandException Thrown if the playlist no longer exists
+     */
+    public List<PlaylistSong> addSongs(List<PlaylistSong> songs) throws CommandException {
+        List<PlaylistSong> added = new ArrayList<>();
+        if (songs.isEmpty())
+            return added;
+
+        // Reserve a position for each song
+        Document header = db.findOneAndUpdate(
+                Filters.eq("_id", getId()),
+                new Document("$inc", new Document("nextPosition", (long) songs.size())),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+        );
+        if (header == null)
+            throw new CommandException("Playlist " + this.friendlyName + " no longer exists!");
+        long position = ((Number) header.get("nextPosition")).longValue() - songs.size();
+
+        List<Document> documents = new ArrayList<>();
+        for (PlaylistSong song : songs)
+            documents.add(song.toDocument().append("playlist", getId()).append("position", position++));
+
+        // The URL is unique per playlist, so duplicates fail without stopping the rest of the insert
+        Set<Integer> failed = new HashSet<>();
+        try {
+            entries.insertMany(documents, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCategory() != ErrorCategory.DUPLICATE_KEY)
+                    logger.error(String.format("Failed to add %s to a playlist", songs.get(error.getIndex()).url));
+                failed.add(error.getIndex());
+            }
+        }
+
+        long duration = 0;
+        for (int i = 0; i < songs.size(); i++) {
+            if (failed.contains(i))
+                continue;
+            added.add(songs.get(i));
+            duration += songs.get(i).duration;
+        }
+        updateTotals(added.size(), duration);
+        return added;
+    }
+
+    /**
+     * Removes songs from the playlist. URLs which aren't in the playlist are ignored.
+     *
+     * @param urls The URLs to remove
+     * @return How many songs were removed
+     */
+    public int removeSongs(Collection<String> urls) {
+        if (urls.isEmpty())
+            return 0;
+
+        // Total up the durations first, as they're gone once the songs are deleted
+        Bson filter = Filters.and(Filters.eq("playlist", getId()), Filters.in("url", new ArrayList<>(urls)));
+        Document totals = entries.aggregate(Arrays.asList(
+                Aggregates.match(filter),
+                Aggregates.group(null, Accumulators.sum("duration", "$duration"))
+        )).first();
+        long duration = (totals == null) ? 0 : ((Number) totals.get("duration")).longValue();
+
+        int removed = (int) entries.deleteMany(filter).getDeletedCount();
+        updateTotals(-removed, -duration);
+        return removed;
+    }
+
+    /**
+     * Finds which of the URLs are in the playlist
+     *
+     * @param urls The URLs to check
+     * @return The URLs which are in the playlist
+     */
+    public Set<String> findSongs(Collection<String> urls) {
+        Set<String> found = new HashSet<>();
+        if (urls.isEmpty())
+            return found;
+
+        for (Document document : entries.find(Filters.and(Filters.eq("playlist", getId()), Filters.in("url", new ArrayList<>(urls))))
+                .projection(Projections.include("url")))
+            found.add(document.getString("url"));
+        return found;
+    }
+
+    /**
+     * Gets a page of songs, in the order they were added
+     *
+     * @param skip  How many songs to skip
+     * @param limit The maximum amount of songs to return
+     * @return The songs found
+     */
+    public List<PlaylistSong> getSongs(int skip, int limit) {
+        List<PlaylistSong> songs = new ArrayList<>();
+        for (Document document : entries.find(Filters.eq("playlist", getId())).sort(Sorts.ascending("position")).skip(skip).limit(limit))
+            songs.add(new PlaylistSong(document));
+        return songs;
+    }
+
+    public int getSongCount() {
+        return songCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Updates the stored song count and total duration
+     *
+     * @param songs    The change in songs
+     * @param duration The change in duration
+     */
+    private void updateTotals(int songs, long duration) {
+        if (songs == 0 && duration == 0)
+            return;
+
+        Document header = db.findOneAndUpdate(
+                Filters.eq("_id", getId()),
+                new Document("$inc", new Document("songCount", songs).append("totalDuration", duration)),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER).projection(Projections.include("songCount", "totalDuration"))
+        );
+        if (header == null)
+            return;
+        songCount = ((Number) header.get("songCount")).intValue();
+        totalDuration = ((Number) header.get("totalDuration")).longValue();
+    }
+
+    private ObjectId getId() {
+        return originalDocument.get("_id", ObjectId.class);
+    }
+
+    /**
+     * Fills in the duration of a song which was stored without one, because it wasn't cached when it was added.
+     * Called once the song has been loaded, the playlist totals are updated to match.
+     *
+     * @param url      The URL of the song
+     * @param duration The duration of the song
+     */
+    public static void backfillDuration(String url, long duration) {
+        if (duration <= 0)
+            return;
+
+        MongoCollection<Document> entries = Misty.database.getCollection("playlistEntries");
+        MongoCollection<Document> playlists = Misty.database.getCollection("playlists");
+        for (Document entry : entries.find(Filters.and(Filters.eq("url", url), Filters.eq("duration", 0L))).projection(Projections.include("playlist"))) {
+            // Only count the duration once, even if another load fills it in at the same time
+            Bson filter = Filters.and(Filters.eq("_id", entry.get("_id", ObjectId.class)), Filters.eq("duration", 0L));
+            if (entries.updateOne(filter, new Document("$set", new Document("duration", duration))).getModifiedCount() == 0)
+                continue;
+            playlists.updateOne(Filters.eq("_id", entry.get("playlist", ObjectId.class)), new Document("$inc", new Document("totalDuration", duration)));
+        }
+    }
+
+    /**
+     * Moves songs out of playlists which still embed them in a songList map and into the playlistEntries collection.
+     * Only runs until it has finished once, run it in the background as it reads every playlist.
+     * Durations are taken from the song cache, songs which aren't cached are filled in by {@link #backfillDuration(String, long)}.
+     *
+     * @param db        The playlist Mongo Collection
+     * @param songCache The song cache to read durations from
+     */
+    public static void migrateSongLists(MongoCollection<Document> db, SongCache songCache) {
+        if (Misty.database.getSchemaVersion("playlists") >= entriesSchemaVersion)
+            return;
+
+        MongoCollection<Document> entries = Misty.database.getCollection("playlistEntries");
+        boolean failed = false;
+        for (Document document : db.find(Filters.exists("songList"))) {
+            ObjectId objectId = document.get("_id", ObjectId.class);
+            Document songListDoc = document.get("songList", Document.class);
+
+            // The songList map was keyed by the raw URL
+            Map<String, Document> legacySongs = new HashMap<>();
+            for (Map.Entry<String, Object> entry : songListDoc.entrySet())
+                legacySongs.put(entry.getKey(), (Document) entry.getValue());
+            Map<String, Long> durations = songCache.getCachedDurations(legacySongs.keySet());
+
+            // The map didn't keep the order, so the closest we can get is the order they were added
+            List<PlaylistSong> songs = new ArrayList<>();
+            for (Map.Entry<String, Document> entry : legacySongs.entrySet())
+                songs.add(new PlaylistSong(entry.getKey(), durations.getOrDefault(entry.getKey(), 0L),
+                        entry.getValue().getLong("addedTimestamp"), entry.getValue().getLong("addedBy")));
+            songs.sort(Comparator.comparingLong(song -> song.addedTimestamp));
+
+            List<Document> documents = new ArrayList<>();
+            long totalDuration = 0;
+            for (int i = 0; i < songs.size(); i++) {
+                documents.add(songs.get(i).toDocument().append("playlist", objectId).append("position", (long) i));
+                totalDuration += songs.get(i).duration;
+            }
+
+            try {
+                if (!documents.isEmpty())
+                    entries.insertMany(documents, new InsertManyOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                // Songs from a previous attempt are already stored, anything else means we try again next time
+                boolean retry = false;
+                for (BulkWriteError error : e.getWriteErrors())
+                    retry |= error.getCategory() != ErrorCategory.DUPLICATE_KEY;
+                if (retry) {
+                    logger.error(String.format("Failed to migrate playlist %s", objectId), e);
+                    failed = true;
+                    continue;
+                }
+            }
+
+            db.updateOne(Filters.eq("_id", objectId), new Document("$set", new Document("songCount", songs.size())
+                    .append("totalDuration", totalDuration)
+                    .append("nextPosition", (long) songs.size()))
+                    .append("$unset", new Document("songList", "")));
+            logger.info(String.format("Migrated %s songs from playlist %s", songs.size(), objectId));
+        }
+
+        // Leave the version alone so any playlists which failed are tried again next time
+        if (failed)
+            logger.warn("Some playlists failed to migrate, they'll be retried on the next start");
+        else
+            Misty.database.setSchemaVersion("playlists", entriesSchemaVersion);
     }
 
     private List<String> getSuggestions(long owner, long searcher, String queryString) {
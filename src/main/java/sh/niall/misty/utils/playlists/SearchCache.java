@@ -0,0 +1,134 @@
+package sh.niall.misty.utils.playlists;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Search Cache
+ * Remembers which song a search returned, so repeat searches can be played from the song cache.
+ * Results are kept in a bounded LRU and in the searchCache collection, which a TTL index cleans up.
+ */
+public class SearchCache {
+
+    private final MongoCollection<Document> db = Misty.database.getCollection("searchCache");
+    private final Map<String, Document> results;
+    private final Logger logger = LoggerFactory.getLogger(SearchCache.class);
+
+    // Settings
+    public static long ttlSeconds = TimeUnit.DAYS.toSeconds(7);
+    private static int maxEntries = 5000;
+
+    // Counters
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SearchCache() {
+        results = new LinkedHashMap<String, Document>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Document> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the URL a search returned, checking memory and then the database
+     *
+     * @param query The normalized search query
+     * @return The URL of the song, null if the search isn't cached or has expired
+     */
+    public String get(String query) {
+        long now = Instant.now().getEpochSecond();
+        Document result;
+        synchronized (this) {
+            result = results.get(query);
+        }
+
+        if (result == null) {
+            try {
+                result = db.find(Filters.eq("query", query)).first();
+            } catch (Exception e) {
+                this.logger.warn("Failed to read the search cache", e);
+            }
+            if (result != null) {
+                synchronized (this) {
+                    results.put(query, result);
+                }
+            }
+        }
+
+        if (result == null || result.getLong("expires") <= now) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return result.getString("url");
+    }
+
+    /**
+     * Stores the URL a search returned
+     *
+     * @param query The normalized search query
+     * @param url   The URL of the first result
+     */
+    public void put(String query, String url) {
+        long expires = Instant.now().getEpochSecond() + ttlSeconds;
+        Document result = new Document("query", query).append("url", url).append("expires", expires);
+        synchronized (this) {
+            results.put(query, result);
+        }
+
+        try {
+            db.updateOne(
+                    Filters.eq("query", query),
+                    new Document("$set", new Document("url", url)
+                            .append("expires", expires)
+                            .append("expiresAt", new Date(TimeUnit.SECONDS.toMillis(expires)))),
+                    new UpdateOptions().upsert(true)
+            );
+        } catch (Exception e) {
+            this.logger.warn("Failed to store a search result", e);
+        }
+    }
+
+    /**
+     * Forgets a search, used when the stored song can't be loaded any more
+     *
+     * @param query The normalized search query
+     */
+    public void remove(String query) {
+        synchronized (this) {
+            results.remove(query);
+        }
+        try {
+            db.deleteOne(Filters.eq("query", query));
+        } catch (Exception e) {
+            this.logger.warn("Failed to remove a search result", e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int getSize() {
+        return results.size();
+    }
+}
@@ -1,21 +1,31 @@
 package sh.niall.misty.utils.playlists;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
 import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 import net.dv8tion.jda.api.entities.Guild;
 import org.apache.commons.codec.binary.Base64;
+import org.bson.BsonType;
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sh.niall.misty.Misty;
 import sh.niall.misty.errors.AudioException;
+import sh.niall.misty.errors.LoadFailedException;
 import sh.niall.misty.errors.MistyException;
 import sh.niall.misty.utils.audio.AudioUtils;
+import sh.niall.misty.utils.audio.interfaces.TrackResolver;
 import sh.niall.yui.Yui;
 import sh.niall.yui.exceptions.CommandException;
 
@@ -23,22 +33,33 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SongCache {
+public class SongCache implements TrackResolver {
 
     private MongoCollection<Document> db = Misty.database.getCollection("songCache");
     private AudioPlayerManager audioPlayerManager;
+    private TrackMemoryCache memoryCache;
+    private SearchCache searchCache = new SearchCache();
+    private ExecutorService loaderPool = Executors.newFixedThreadPool(4);
     private int daysToExpire = 30;
+    private int migrationBatchSize = 500;
+    private int maxConcurrentLoads = 8;
+    private SongCacheRefresher refresher;
+    private final Map<String, CompletableFuture<AudioTrack>> loadingTracks = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+    private final Semaphore loadPermits = new Semaphore(maxConcurrentLoads);
+    private final Queue<Runnable> waitingLoads = new ConcurrentLinkedQueue<>();
     private Logger logger = LoggerFactory.getLogger(SongCache.class);
 
     public SongCache(Yui yui, AudioPlayerManager audioPlayerManager) {
         this.audioPlayerManager = audioPlayerManager;
-        ((ScheduledExecutorService) Executors.newSingleThreadScheduledExecutor()).scheduleAtFixedRate(this::updateTask, 0, 2, TimeUnit.DAYS);
+        this.memoryCache = new TrackMemoryCache(Misty.config.getSongCacheMemoryBytes(), audioPlayerManager);
+        this.refresher = new SongCacheRefresher(this, db, daysToExpire);
+        this.refresher.start();
+        Executors.newSingleThreadExecutor().submit(this::migrateData);
     }
 
     /**
@@ -53,27 +74,313 @@ public class SongCache {
      * @throws CommandException Thrown if no songs were found
      */
     public AudioTrack getTrack(Guild guild, String url) throws AudioException, MistyException, IOException, CommandException {
-        // First check the database
+        // First check the memory cache
+        AudioTrack cachedTrack = memoryCache.get(url);
+        if (cachedTrack != null) {
+            refresher.markPlayed(url);
+            return cachedTrack;
+        }
+
+        // Next check the database
         Document document = db.find(Filters.eq("url", url)).first();
-        if (document != null)
-            return decodeString(document.getString("data"));
+        if (document != null) {
+            refresher.markPlayed(url);
+            return decodeDocument(document);
+        }
 
         // We don't have the track in the database
-        List<AudioTrack> tracks = AudioUtils.runQuery(audioPlayerManager, url, guild);
+        return loadTrack(guild, url);
+    }
+
+    /**
+     * Gets a song from the cache without blocking, loading it from the source if it's not cached.
+     * Used by the AudioGuild to resolve queued songs just before they play.
+     *
+     * @param url The URL to lookup
+     * @return A future which completes with the AudioTrack found
+     */
+    @Override
+    public CompletableFuture<AudioTrack> resolveTrack(String url) {
+        AudioTrack cachedTrack = memoryCache.get(url);
+        if (cachedTrack != null) {
+            refresher.markPlayed(url);
+            return CompletableFuture.completedFuture(cachedTrack);
+        }
+
+        return CompletableFuture.supplyAsync(() -> db.find(Filters.eq("url", url)).first(), loaderPool).thenCompose(document -> {
+            if (document == null)
+                return loadTrackAsync(url);
+
+            refresher.markPlayed(url);
+            try {
+                return CompletableFuture.completedFuture(decodeDocument(document));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Searches YouTube and returns the first result.
+     * Repeat searches skip the search and play the song from the cache, new results are added to the cache.
+     *
+     * @param guild  The current guild
+     * @param search The text to search for
+     * @return A future which completes with the AudioTrack found, or an AudioException
+     */
+    public CompletableFuture<AudioTrack> search(Guild guild, String search) {
+        String query = AudioUtils.canonicalQuery("ytsearch:" + search);
+        return CompletableFuture.supplyAsync(() -> searchCache.get(query), loaderPool).thenCompose(url -> {
+            if (url == null)
+                return searchYoutube(guild, search, query);
+
+            // We've seen this search before, only search again if the song itself can't be loaded
+            return resolveTrack(url).handle((audioTrack, error) -> {
+                if (error == null)
+                    return CompletableFuture.completedFuture(audioTrack);
+
+                Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                if (!(cause instanceof LoadFailedException) && !(cause instanceof CommandException)) {
+                    CompletableFuture<AudioTrack> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(cause);
+                    return failed;
+                }
+
+                this.logger.info(String.format("Cached search result %s failed to load, searching again", url));
+                searchCache.remove(query);
+                return searchYoutube(guild, search, query);
+            }).thenCompose(future -> future);
+        });
+    }
+
+    /**
+     * Searches YouTube and stores the first result in the search cache and song cache
+     *
+     * @param guild  The current guild
+     * @param search The text to search for
+     * @param query  The canonical search query used as the search cache key
+     * @return A future which completes with the AudioTrack found, or an AudioException
+     */
+    private CompletableFuture<AudioTrack> searchYoutube(Guild guild, String search, String query) {
+        return AudioUtils.queryAsync(audioPlayerManager, "ytsearch:" + search, guild, AudioUtils.queryTimeout, loaderPool).thenApply(tracks -> {
+            if (tracks.isEmpty())
+                throw new CompletionException(new AudioException("No results found!"));
+
+            AudioTrack audioTrack = tracks.get(0);
+            String resultUrl = audioTrack.getInfo().uri;
+            searchCache.put(query, resultUrl);
+            if (!memoryCache.contains(resultUrl)) {
+                try {
+                    storeTrack(resultUrl, Collections.singletonList(audioTrack.makeClone()));
+                } catch (IOException | CommandException e) {
+                    this.logger.warn(String.format("Failed to cache search result %s", resultUrl));
+                }
+            }
+            return audioTrack;
+        });
+    }
+
+    /**
+     * Gets the duration of songs which are already cached, without loading any missing songs
+     *
+     * @param urls The URLs to lookup
+     * @return The duration of each cached song, streams count as 0
+     */
+    public Map<String, Long> getCachedDurations(Collection<String> urls) {
+        Map<String, Long> durations = new HashMap<>();
+        Set<String> remaining = new HashSet<>();
+        for (String url : urls) {
+            AudioTrackInfo cachedInfo = memoryCache.getInfo(url);
+            if (cachedInfo == null)
+                remaining.add(url);
+            else
+                durations.put(url, cachedInfo.isStream ? 0 : cachedInfo.length);
+        }
+
+        if (remaining.isEmpty())
+            return durations;
+
+        for (Document document : db.find(Filters.in("url", new ArrayList<>(remaining)))) {
+            try {
+                durations.put(document.getString("url"), getDuration(decodeDocument(document)));
+            } catch (IOException e) {
+                this.logger.error(String.format("Failed to decode %s from the cache", document.getString("url")));
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Gets the length of a track, streams don't have a length so they count as 0
+     *
+     * @param audioTrack The track to check
+     * @return The length in milliseconds
+     */
+    public static long getDuration(AudioTrack audioTrack) {
+        return audioTrack.getInfo().isStream ? 0 : audioTrack.getInfo().length;
+    }
+
+    /**
+     * Loads a song from its source and stores it in the cache
+     *
+     * @param guild The current guild
+     * @param url   The URL to load
+     * @return The AudioTrack found
+     * @throws AudioException   Thrown if there was an issue looking up the song
+     * @throws MistyException   Thrown if there was an issue looking up the song
+     * @throws IOException      Thrown if there was an issue encoding the track
+     * @throws CommandException Thrown if no songs were found
+     */
+    private AudioTrack loadTrack(Guild guild, String url) throws AudioException, MistyException, IOException, CommandException {
+        try {
+            return loadTrackAsync(url).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MistyException("There was an error getting the track.");
+        } catch (ExecutionException e) {
+            Throwable cause = (e.getCause() instanceof CompletionException) ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof AudioException)
+                throw (AudioException) cause;
+            if (cause instanceof CommandException)
+                throw (CommandException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new MistyException("There was an error getting the track.");
+        }
+    }
+
+    /**
+     * Loads a song from its source without blocking and stores it in the cache.
+     * Storing happens on the loader pool so Lava Player's threads aren't held up by the database.
+     * Callers loading the same URL at the same time share one load and one insert, each getting their own copy.
+     *
+     * @param url The URL to load
+     * @return A future which completes with the AudioTrack found
+     */
+    private CompletableFuture<AudioTrack> loadTrackAsync(String url) {
+        // Register first so only the caller who wins starts the load
+        CompletableFuture<AudioTrack> started = new CompletableFuture<>();
+        CompletableFuture<AudioTrack> shared = loadingTracks.putIfAbsent(url, started);
+        if (shared != null) {
+            coalescedLoads.incrementAndGet();
+            return shared.thenApply(AudioTrack::makeClone);
+        }
+
+        started.whenComplete((audioTrack, error) -> loadingTracks.remove(url, started));
+        queueLoad(url).thenApply(tracks -> {
+            try {
+                return storeTrack(url, tracks);
+            } catch (IOException | CommandException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((audioTrack, error) -> {
+            if (error == null)
+                started.complete(audioTrack);
+            else
+                started.completeExceptionally(error);
+        });
+        return started.thenApply(AudioTrack::makeClone);
+    }
+
+    /**
+     * Loads a URL once there's room, so only a few loads run at a time.
+     * The query's timeout starts when the load does, not while it's waiting for its turn.
+     *
+     * @param url The URL to load
+     * @return A future which completes with the tracks found
+     */
+    private CompletableFuture<List<AudioTrack>> queueLoad(String url) {
+        CompletableFuture<List<AudioTrack>> future = new CompletableFuture<>();
+        waitingLoads.add(() -> AudioUtils.queryAsync(audioPlayerManager, url, null, AudioUtils.queryTimeout, loaderPool).whenComplete((tracks, error) -> {
+            finishLoad();
+            if (error == null)
+                future.complete(tracks);
+            else
+                future.completeExceptionally(error);
+        }));
+        startWaitingLoads();
+        return future;
+    }
+
+    /**
+     * Frees up the slot of a finished load and starts the next one on the loader pool
+     */
+    private void finishLoad() {
+        loadPermits.release();
+        loaderPool.execute(this::startWaitingLoads);
+    }
+
+    /**
+     * Starts waiting loads while there's room
+     */
+    private void startWaitingLoads() {
+        while (!waitingLoads.isEmpty() && loadPermits.tryAcquire()) {
+            Runnable load = waitingLoads.poll();
+            if (load == null)
+                loadPermits.release();
+            else
+                load.run();
+        }
+    }
+
+    /**
+     * Stores the first result of a query in the cache
+     *
+     * @param url    The URL which was loaded
+     * @param tracks The results of the query
+     * @return The AudioTrack stored
+     * @throws IOException      Thrown if there was an issue encoding the track
+     * @throws CommandException Thrown if no songs were found
+     */
+    private AudioTrack storeTrack(String url, List<AudioTrack> tracks) throws IOException, CommandException {
         if (tracks.isEmpty())
             throw new CommandException("URL returned no results!");
 
         // Store in db
-        document = new Document();
+        byte[] data = encodeBytes(tracks.get(0));
+        Document document = new Document();
         document.append("url", url);
-        document.append("data", encodeTrack(tracks.get(0)));
+        document.append("data", new Binary(TrackBlob.pack(data)));
         document.append("expires", Instant.now().getEpochSecond() + TimeUnit.DAYS.toSeconds(daysToExpire));
-        db.insertOne(document);
+        document.append("lastPlayed", Instant.now().getEpochSecond());
+        insertDocument(document);
+        memoryCache.put(url, tracks.get(0), data);
+
+        // Playlists may have stored this song before we knew how long it was
+        Playlist.backfillDuration(url, getDuration(tracks.get(0)));
 
         // Give it back
         return tracks.get(0);
     }
 
+    /**
+     * Inserts a songCache document. URLs are unique, so if another load stored the song first we keep theirs.
+     *
+     * @param document The document to insert
+     */
+    private void insertDocument(Document document) {
+        try {
+            db.insertOne(document);
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY)
+                throw e;
+        }
+    }
+
+    /**
+     * Decodes a songCache document and stores it in the memory cache
+     *
+     * @param document The document to decode
+     * @return The AudioTrack stored in the document
+     * @throws IOException Thrown if there was an issue decoding
+     */
+    private AudioTrack decodeDocument(Document document) throws IOException {
+        byte[] data = readData(document);
+        AudioTrack audioTrack = decodeBytes(data);
+        memoryCache.put(document.getString("url"), audioTrack, data);
+        return audioTrack;
+    }
+
     /**
      * Looks up the playlist and stores the video urls
      *
@@ -93,84 +400,146 @@ public class SongCache {
 
         List<AudioTrack> addedTracks = new ArrayList<>();
         for (AudioTrack track : tracks) {
-            Document document = db.find(Filters.eq("url", track.getInfo().uri)).first();
             addedTracks.add(track);
-            if (document != null)
+            if (memoryCache.contains(track.getInfo().uri))
+                continue;
+
+            byte[] data = encodeBytes(track);
+            memoryCache.put(track.getInfo().uri, track, data);
+            if (db.find(Filters.eq("url", track.getInfo().uri)).first() != null)
                 continue;
 
             // Store in db
-            document = new Document();
+            Document document = new Document();
             document.append("url", track.getInfo().uri);
-            document.append("data", encodeTrack(track));
+            document.append("data", new Binary(TrackBlob.pack(data)));
             document.append("expires", Instant.now().getEpochSecond() + TimeUnit.DAYS.toSeconds(daysToExpire));
-            db.insertOne(document);
+            document.append("lastPlayed", Instant.now().getEpochSecond());
+            insertDocument(document);
         }
         return addedTracks;
     }
 
     /**
-     * Encodes a track for storage
+     * Gets the memory cache, used for reading the cache counters
+     *
+     * @return The memory cache
+     */
+    public TrackMemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Gets the refresher, used for reading the refresh counters
+     *
+     * @return The refresher
+     */
+    public SongCacheRefresher getRefresher() {
+        return refresher;
+    }
+
+    /**
+     * Gets the search cache, used for reading the search counters
+     *
+     * @return The search cache
+     */
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * Gets how many loads were shared with a load which was already running
+     *
+     * @return The amount of shared loads
+     */
+    public long getCoalescedLoads() {
+        return coalescedLoads.get();
+    }
+
+    AudioPlayerManager getAudioPlayerManager() {
+        return audioPlayerManager;
+    }
+
+    /**
+     * Reads the encoded track from a songCache document.
+     * Older documents store it as a Base64 string, newer ones as a versioned binary blob.
+     *
+     * @param document The document to read
+     * @return The encoded track
+     * @throws IOException Thrown if the data is missing or corrupt
+     */
+    byte[] readData(Document document) throws IOException {
+        Object data = document.get("data");
+        if (data instanceof Binary)
+            return TrackBlob.unpack(((Binary) data).getData());
+        if (data instanceof String)
+            return Base64.decodeBase64((String) data);
+        throw new IOException("Song cache document has no track data");
+    }
+
+    /**
+     * Encodes a track into lava players message format
      *
      * @param audioTrack The AudioTrack to encode
-     * @return A byte string to store
+     * @return The encoded bytes
      * @throws IOException Thrown if there was an issue encoding
      */
-    private String encodeTrack(AudioTrack audioTrack) throws IOException {
+    byte[] encodeBytes(AudioTrack audioTrack) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         audioPlayerManager.encodeTrack(new MessageOutput(outputStream), audioTrack);
-        return Base64.encodeBase64String(outputStream.toByteArray());
+        return outputStream.toByteArray();
     }
 
     /**
-     * Converts a byte string into an AudioTrack
+     * Converts encoded bytes into an AudioTrack
      *
-     * @param input The Byte String
+     * @param input The encoded bytes
      * @return The Audio Track
      * @throws IOException Thrown if there was an issue decoding
      */
-    private AudioTrack decodeString(String input) throws IOException {
-        return audioPlayerManager.decodeTrack(new MessageInput(new ByteArrayInputStream(Base64.decodeBase64(input)))).decodedTrack;
+    private AudioTrack decodeBytes(byte[] input) throws IOException {
+        return audioPlayerManager.decodeTrack(new MessageInput(new ByteArrayInputStream(input))).decodedTrack;
     }
 
     /**
-     * Updates songs which have expired
+     * Converts documents which still store the track as a Base64 string into binary blobs.
+     * Runs in small batches in the background, documents are readable in both formats while this runs.
      */
-    public void updateTask() {
-        this.logger.info("Updating song cache...");
+    public void migrateData() {
+        long migrated = 0;
         try {
-            // Find all documents which have expired
-            for (Document document : db.find(Filters.lte("expires", Instant.now().getEpochSecond()))) {
-                Thread.sleep(TimeUnit.MINUTES.toMillis(2));
-                // Get the URL and request for a new track
-                String url = decodeString(document.getString("data")).getInfo().uri;
-                AudioTrack newTrack = AudioUtils.runQuery(audioPlayerManager, url, null).get(0);
-                String newData;
-
-                // Encoding the new track can error if youtube makes it unavailable
-                try {
-                    newData = encodeTrack(newTrack);
-                } catch (NullPointerException ignored) {
-                    this.logger.info(String.format("Removing %s from the cache as it's unavailable", url));
-                    continue;
+            while (true) {
+                List<WriteModel<Document>> updates = new ArrayList<>();
+                for (Document document : db.find(Filters.type("data", BsonType.STRING))
+                        .projection(Projections.include("data"))
+                        .limit(migrationBatchSize)) {
+                    String data = document.getString("data");
+                    updates.add(new UpdateOneModel<>(
+                            // Only update if nothing has changed the document since we read it
+                            Filters.and(Filters.eq("_id", document.get("_id", ObjectId.class)), Filters.eq("data", data)),
+                            new Document("$set", new Document("data", new Binary(TrackBlob.pack(Base64.decodeBase64(data)))))
+                    ));
                 }
 
-                // Create the updated document
-                Document updatedDocument = new Document();
+                if (updates.isEmpty())
+                    break;
 
-                // Set the expired field - This is changed no matter what
-                updatedDocument.append("expires", Instant.now().getEpochSecond() + TimeUnit.DAYS.toSeconds(daysToExpire));
-
-                // Check to see if the entry has expired
-                if (!newData.equals(document.getString("data")))
-                    updatedDocument.append("data", newData);
+                int modified = db.bulkWrite(updates).getModifiedCount();
+                if (modified == 0) {
+                    this.logger.warn("Song cache migration made no progress, stopping");
+                    break;
+                }
+                migrated += modified;
 
-                // Update DB and wait
-                db.updateOne(Filters.eq("_id", document.get("_id", ObjectId.class)), new Document("$set", updatedDocument));
+                // Give the database some room between batches
+                Thread.sleep(1000);
             }
-            this.logger.info("Song cache updated!");
+            if (migrated != 0)
+                this.logger.info(String.format("Migrated %s song cache entries to binary", migrated));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            this.logger.error("Updating song cache failed!");
-            e.printStackTrace();
+            this.logger.error("Song cache migration failed!", e);
         }
     }
 }
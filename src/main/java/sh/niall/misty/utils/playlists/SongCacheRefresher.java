@@ -0,0 +1,250 @@
+package sh.niall.misty.utils.playlists;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
+import sh.niall.misty.utils.audio.AudioUtils;
+import sh.niall.misty.utils.misty.TokenBucket;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Song Cache Refresher
+ * Re-queries expired songCache entries in the background. Entries are read through the expires index, recently
+ * played songs first, and each one is checkpointed by pushing its expiry forward as soon as it's refreshed.
+ */
+public class SongCacheRefresher {
+
+    private final SongCache songCache;
+    private final MongoCollection<Document> db;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    private final int concurrency;
+    private final TokenBucket tokens;
+    private final Set<String> played = ConcurrentHashMap.newKeySet();
+    private final Logger logger = LoggerFactory.getLogger(SongCacheRefresher.class);
+
+    // Settings
+    private int batchSize = 100;
+    private int daysToExpire;
+    private int retryHours = 24;
+    private int maxFailures = 5;
+
+    // Counters
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = false;
+    private volatile long lastRunMillis = 0;
+
+    /**
+     * Creates a new refresher, call #start to begin refreshing
+     *
+     * @param songCache    The song cache to refresh
+     * @param db           The songCache collection
+     * @param daysToExpire How many days a refreshed entry is valid for
+     */
+    public SongCacheRefresher(SongCache songCache, MongoCollection<Document> db, int daysToExpire) {
+        this.songCache = songCache;
+        this.db = db;
+        this.daysToExpire = daysToExpire;
+        this.concurrency = Math.max(1, Misty.config.getSongCacheRefreshConcurrency());
+        this.workers = Executors.newFixedThreadPool(concurrency);
+        this.slots = new Semaphore(concurrency);
+        int perMinute = Math.max(1, Misty.config.getSongCacheRefreshPerMinute());
+        this.tokens = new TokenBucket(Math.min(perMinute, concurrency), perMinute, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Starts checking for expired entries. A run only starts once the previous one has finished.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::run, 1, 10, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(this::flushPlayed, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Marks a song as recently played so it's refreshed before other songs
+     *
+     * @param url The URL of the song
+     */
+    public void markPlayed(String url) {
+        played.add(url);
+    }
+
+    /**
+     * Refreshes every expired entry, a batch at a time
+     */
+    public void run() {
+        long started = System.currentTimeMillis();
+        long startRefreshed = refreshed.get();
+        long startChanged = changed.get();
+        long startFailed = failed.get();
+        try {
+            while (true) {
+                List<Document> batch = new ArrayList<>();
+                db.find(Filters.lte("expires", Instant.now().getEpochSecond()))
+                        .sort(Sorts.orderBy(Sorts.descending("lastPlayed"), Sorts.ascending("expires")))
+                        .projection(Projections.include("url", "data"))
+                        .limit(batchSize)
+                        .into(batch);
+                if (batch.isEmpty())
+                    break;
+
+                if (!running) {
+                    running = true;
+                    this.logger.info("Refreshing expired song cache entries...");
+                }
+
+                for (Document document : batch) {
+                    tokens.acquire();
+                    slots.acquire();
+                    workers.submit(() -> {
+                        try {
+                            refresh(document);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+
+                // Wait for the batch to finish so the next query doesn't return songs we're still refreshing
+                slots.acquire(concurrency);
+                slots.release(concurrency);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            this.logger.error("Refreshing the song cache failed!", e);
+        }
+
+        if (!running)
+            return;
+        running = false;
+        lastRunMillis = System.currentTimeMillis() - started;
+        this.logger.info(String.format(
+                "Song cache refreshed in %ss: %s refreshed, %s changed, %s failed",
+                lastRunMillis / 1000, refreshed.get() - startRefreshed, changed.get() - startChanged, failed.get() - startFailed
+        ));
+    }
+
+    /**
+     * Refreshes a single entry. Entries which fail are tried again later.
+     *
+     * @param document The songCache document to refresh
+     */
+    private void refresh(Document document) {
+        ObjectId objectId = document.get("_id", ObjectId.class);
+        String url = document.getString("url");
+        try {
+            List<AudioTrack> tracks = AudioUtils.runQuery(songCache.getAudioPlayerManager(), url, null);
+            if (tracks.isEmpty())
+                throw new IOException("URL returned no results");
+
+            // Encoding the new track can error if youtube makes it unavailable
+            byte[] newData;
+            try {
+                newData = songCache.encodeBytes(tracks.get(0));
+            } catch (NullPointerException e) {
+                throw new IOException("Track is unavailable");
+            }
+
+            Document updatedDocument = new Document();
+            updatedDocument.append("expires", nextExpiry());
+            if (!Arrays.equals(newData, readDataOrNull(document))) {
+                updatedDocument.append("data", new Binary(TrackBlob.pack(newData)));
+                songCache.getMemoryCache().remove(url);
+                changed.incrementAndGet();
+            }
+            db.updateOne(Filters.eq("_id", objectId), new Document("$set", updatedDocument));
+            refreshed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+
+            // Stop trying once the song has been failing for a while, it's most likely been removed
+            if (Misty.failedQueries.getFailures(url) >= maxFailures) {
+                this.logger.info(String.format("Removing %s from the cache as it's unavailable", url));
+                db.deleteOne(Filters.eq("_id", objectId));
+                songCache.getMemoryCache().remove(url);
+                return;
+            }
+
+            this.logger.info(String.format("Failed to refresh %s, trying again later: %s", url, e.getMessage()));
+            db.updateOne(Filters.eq("_id", objectId), new Document("$set", new Document("expires",
+                    Instant.now().getEpochSecond() + TimeUnit.HOURS.toSeconds(retryHours))));
+        }
+    }
+
+    /**
+     * Stores when songs were last played, batched so playing songs doesn't write to the database every time
+     */
+    private void flushPlayed() {
+        if (played.isEmpty())
+            return;
+
+        List<String> urls = new ArrayList<>();
+        for (String url : played) {
+            played.remove(url);
+            urls.add(url);
+        }
+
+        try {
+            db.updateMany(Filters.in("url", urls), new Document("$set", new Document("lastPlayed", Instant.now().getEpochSecond())));
+        } catch (Exception e) {
+            this.logger.warn("Failed to store when songs were last played", e);
+        }
+    }
+
+    /**
+     * Gets the next expiry time. Up to a day is added at random so entries don't all expire together.
+     *
+     * @return The expiry as an epoch second
+     */
+    private long nextExpiry() {
+        return Instant.now().getEpochSecond() + TimeUnit.DAYS.toSeconds(daysToExpire) + ThreadLocalRandom.current().nextLong(TimeUnit.DAYS.toSeconds(1));
+    }
+
+    private byte[] readDataOrNull(Document document) {
+        try {
+            return songCache.readData(document);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public long getRefreshed() {
+        return refreshed.get();
+    }
+
+    public long getChanged() {
+        return changed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+}
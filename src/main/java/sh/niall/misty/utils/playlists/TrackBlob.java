@@ -0,0 +1,95 @@
+package sh.niall.misty.utils.playlists;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Track Blob
+ * Packs encoded tracks for the songCache collection. The first byte is the format version, followed by the payload.
+ */
+public class TrackBlob {
+
+    public static final byte FORMAT_RAW = 1;
+    public static final byte FORMAT_DEFLATE = 2;
+
+    /**
+     * Packs an encoded track, compressing it if that makes it smaller
+     *
+     * @param data The encoded track
+     * @return The packed blob
+     */
+    public static byte[] pack(byte[] data) {
+        byte[] compressed = deflate(data);
+        if (compressed.length < data.length)
+            return withVersion(FORMAT_DEFLATE, compressed);
+        return withVersion(FORMAT_RAW, data);
+    }
+
+    /**
+     * Unpacks a blob back into an encoded track
+     *
+     * @param blob The packed blob
+     * @return The encoded track
+     * @throws IOException Thrown if the blob is empty, corrupt or in an unknown format
+     */
+    public static byte[] unpack(byte[] blob) throws IOException {
+        if (blob.length == 0)
+            throw new IOException("Track blob is empty");
+
+        byte[] payload = Arrays.copyOfRange(blob, 1, blob.length);
+        switch (blob[0]) {
+            case FORMAT_RAW:
+                return payload;
+            case FORMAT_DEFLATE:
+                return inflate(payload);
+            default:
+                throw new IOException("Unknown track blob format " + blob[0]);
+        }
+    }
+
+    private static byte[] withVersion(byte version, byte[] payload) {
+        byte[] blob = new byte[payload.length + 1];
+        blob[0] = version;
+        System.arraycopy(payload, 0, blob, 1, payload.length);
+        return blob;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+            byte[] buffer = new byte[512];
+            while (!deflater.finished())
+                outputStream.write(buffer, 0, deflater.deflate(buffer));
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] payload) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(payload.length * 3);
+            byte[] buffer = new byte[512];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Track blob is truncated");
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Track blob is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package sh.niall.misty.utils.playlists;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import sh.niall.misty.utils.playlists.containers.CachedTrack;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Track Memory Cache
+ * A bounded LRU cache which sits in front of the songCache collection.
+ * Entries hold the track info and the encoded track, a fresh AudioTrack is decoded from the bytes on every hit.
+ */
+public class TrackMemoryCache {
+
+    private final LinkedHashMap<String, CachedTrack> tracks = new LinkedHashMap<>(256, 0.75f, true);
+    private final long maxBytes;
+    private final AudioPlayerManager audioPlayerManager;
+    private long currentBytes = 0;
+
+    // Counters
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new memory cache
+     *
+     * @param maxBytes           The estimated amount of heap the cache is allowed to use
+     * @param audioPlayerManager The manager used to decode cached tracks
+     */
+    public TrackMemoryCache(long maxBytes, AudioPlayerManager audioPlayerManager) {
+        this.maxBytes = maxBytes;
+        this.audioPlayerManager = audioPlayerManager;
+    }
+
+    /**
+     * Gets a copy of the cached track
+     *
+     * @param url The URL to lookup
+     * @return A newly decoded track, null if it isn't cached or couldn't be decoded
+     */
+    public AudioTrack get(String url) {
+        CachedTrack cachedTrack;
+        synchronized (this) {
+            cachedTrack = tracks.get(url);
+        }
+
+        if (cachedTrack == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        AudioTrack audioTrack;
+        try {
+            audioTrack = audioPlayerManager.decodeTrack(new MessageInput(new ByteArrayInputStream(cachedTrack.data))).decodedTrack;
+        } catch (IOException e) {
+            audioTrack = null;
+        }
+
+        // Drop entries we can't decode, the caller falls back to the database
+        if (audioTrack == null) {
+            remove(url);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return audioTrack;
+    }
+
+    /**
+     * Gets the info of a cached track without decoding it
+     *
+     * @param url The URL to lookup
+     * @return The track info, null if it isn't cached
+     */
+    public AudioTrackInfo getInfo(String url) {
+        CachedTrack cachedTrack;
+        synchronized (this) {
+            cachedTrack = tracks.get(url);
+        }
+
+        if (cachedTrack == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return cachedTrack.info;
+    }
+
+    /**
+     * Checks if a URL is cached without affecting the counters or the eviction order
+     *
+     * @param url The URL to check
+     * @return True if it's cached
+     */
+    public synchronized boolean contains(String url) {
+        return tracks.containsKey(url);
+    }
+
+    /**
+     * Stores a track in the cache, replacing any existing entry
+     *
+     * @param url   The URL to store the track under
+     * @param track The track to store, only its info is kept so the caller can keep using it
+     * @param data  The encoded track
+     */
+    public void put(String url, AudioTrack track, byte[] data) {
+        CachedTrack cachedTrack = new CachedTrack(track.getInfo(), data);
+        if (cachedTrack.weight > maxBytes)
+            return;
+
+        synchronized (this) {
+            CachedTrack previous = tracks.put(url, cachedTrack);
+            if (previous != null)
+                currentBytes -= previous.weight;
+            currentBytes += cachedTrack.weight;
+
+            // Evict the least recently used entries until we fit
+            Iterator<Map.Entry<String, CachedTrack>> iterator = tracks.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                currentBytes -= iterator.next().getValue().weight;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes a track from the cache. Remains silent if it isn't cached.
+     *
+     * @param url The URL to remove
+     */
+    public synchronized void remove(String url) {
+        CachedTrack previous = tracks.remove(url);
+        if (previous != null)
+            currentBytes -= previous.weight;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int getSize() {
+        return tracks.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,35 @@
+package sh.niall.misty.utils.playlists.containers;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+
+/*
+Entry container for the TrackMemoryCache
+ */
+public class CachedTrack {
+    public final AudioTrackInfo info;
+    public final byte[] data;
+    public final long weight;
+
+    public CachedTrack(AudioTrackInfo info, byte[] data) {
+        this.info = info;
+        this.data = data;
+        this.weight = estimateWeight(info, data);
+    }
+
+    /**
+     * Roughly estimates how many bytes this entry holds on the heap
+     *
+     * @param info The decoded track info
+     * @param data The encoded track
+     * @return The estimated size in bytes
+     */
+    private static long estimateWeight(AudioTrackInfo info, byte[] data) {
+        long strings = 0;
+        for (String value : new String[]{info.title, info.author, info.identifier, info.uri}) {
+            if (value != null)
+                strings += value.length() * 2L;
+        }
+        // The encoded bytes, the decoded strings (stored twice, once for the key) and object overhead
+        return data.length + strings * 2 + 256;
+    }
+}
@@ -2,22 +2,33 @@ package sh.niall.misty.utils.playlists.containers;
 
 import org.bson.Document;
 
+/*
+Entry container for a song in a playlist, stored in the playlistEntries collection
+ */
 public class PlaylistSong {
+    public String url;
+    public long duration;
     public long addedTimestamp;
     public long addedBy;
 
     public PlaylistSong(Document document) {
+        this.url = document.getString("url");
+        this.duration = ((Number) document.getOrDefault("duration", 0L)).longValue();
         this.addedTimestamp = document.getLong("addedTimestamp");
         this.addedBy = document.getLong("addedBy");
     }
 
-    public PlaylistSong(long addedTimestamp, long addedBy) {
+    public PlaylistSong(String url, long duration, long addedTimestamp, long addedBy) {
+        this.url = url;
+        this.duration = duration;
         this.addedTimestamp = addedTimestamp;
         this.addedBy = addedBy;
     }
 
     public Document toDocument() {
         Document document = new Document();
+        document.put("url", url);
+        document.put("duration", duration);
         document.put("addedTimestamp", addedTimestamp);
         document.put("addedBy", addedBy);
         return document;
@@ -0,0 +1,228 @@
+package sh.niall.misty.utils.reminders;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.Misty;
+import sh.niall.misty.utils.ui.Helper;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Reminder Scheduler
+ * Loads upcoming reminders from the database in windows and fires each one at its due time.
+ * Reminders are claimed in the database before they're sent, so a restart won't send them twice,
+ * and a claim expires if the delivery never finished so the reminder isn't lost either.
+ */
+public class ReminderScheduler {
+
+    private final MongoCollection<Document> db;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<ObjectId, ScheduledFuture<?>> scheduled = new ConcurrentHashMap<>();
+    private final Semaphore deliveryPermits = new Semaphore(maxConcurrentDeliveries);
+    private final Logger logger = LoggerFactory.getLogger(ReminderScheduler.class);
+
+    // Static
+    public static int windowSeconds = 60;
+    public static int claimSeconds = 300;
+    public static int maxConcurrentDeliveries = 10;
+
+    public ReminderScheduler(MongoCollection<Document> db) {
+        this.db = db;
+
+        // Start loading windows
+        scheduler.scheduleAtFixedRate(this::loadWindow, 0, windowSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Schedules a reminder if it's due before the next window is loaded
+     *
+     * @param document The reminder to schedule
+     */
+    public void schedule(Document document) {
+        ObjectId id = document.getObjectId("_id");
+        long delay = document.getLong("timestamp") - Instant.now().getEpochSecond();
+        if (delay >= windowSeconds || scheduled.containsKey(id))
+            return;
+
+        scheduled.put(id, scheduler.schedule(() -> fire(id), Math.max(delay, 0), TimeUnit.SECONDS));
+    }
+
+    /**
+     * Stops a reminder from firing, used when it's deleted. Remains silent if it isn't scheduled.
+     *
+     * @param id The id of the reminder
+     */
+    public void cancel(ObjectId id) {
+        ScheduledFuture<?> future = scheduled.remove(id);
+        if (future != null)
+            future.cancel(false);
+    }
+
+    /**
+     * Schedules every unclaimed reminder due within the next window
+     */
+    private void loadWindow() {
+        // Wait until we can see every guild
+        if (Misty.shards == null || !Misty.shards.isReady())
+            return;
+
+        try {
+            long now = Instant.now().getEpochSecond();
+            for (Document document : db.find(Filters.and(
+                    Filters.lt("timestamp", now + windowSeconds),
+                    Filters.or(Filters.exists("claimedUntil", false), Filters.lt("claimedUntil", now))
+            )))
+                schedule(document);
+        } catch (Exception e) {
+            this.logger.error("Failed to load reminders", e);
+        }
+    }
+
+    /**
+     * Claims a reminder and sends it, called at the reminders due time
+     *
+     * @param id The id of the reminder
+     */
+    private void fire(ObjectId id) {
+        // Try again shortly if we're already sending lots of reminders
+        if (!deliveryPermits.tryAcquire()) {
+            scheduled.put(id, scheduler.schedule(() -> fire(id), 1, TimeUnit.SECONDS));
+            return;
+        }
+        scheduled.remove(id);
+
+        try {
+            // Claim it, if this fails it was deleted or another instance has it
+            long now = Instant.now().getEpochSecond();
+            Document document = db.findOneAndUpdate(
+                    Filters.and(
+                            Filters.eq("_id", id),
+                            Filters.or(Filters.exists("claimedUntil", false), Filters.lt("claimedUntil", now))
+                    ),
+                    Updates.set("claimedUntil", now + claimSeconds)
+            );
+            if (document == null) {
+                deliveryPermits.release();
+                return;
+            }
+
+            deliver(document);
+        } catch (Exception e) {
+            deliveryPermits.release();
+            this.logger.error("Failed to send reminder " + id, e);
+        }
+    }
+
+    /**
+     * Sends the reminder to the guild channel, falling back to the users DMs
+     *
+     * @param document The reminder to send
+     */
+    private void deliver(Document document) {
+        // Build the message
+        EmbedBuilder embedBuilder = new EmbedBuilder();
+        embedBuilder.setTitle("Reminder!");
+        embedBuilder.setDescription("I'm reminding you about this message:");
+        embedBuilder.addField("Message link:", document.getString("url"), false);
+        embedBuilder.setColor(Helper.randomColor());
+        MessageBuilder messageBuilder = new MessageBuilder();
+        messageBuilder.setContent(String.format("<@%s>", document.getLong("author")));
+        messageBuilder.setEmbed(embedBuilder.build());
+        Message message = messageBuilder.build();
+
+        // Try to send to the Guild Channel first
+        TextChannel channel = getChannel(document);
+        if (channel != null) {
+            try {
+                channel.sendMessage(message).queue(sent -> finish(document), error -> deliverPrivate(document, message));
+                return;
+            } catch (RuntimeException e) {
+                // JDA checks our permissions before queueing, so a channel we can't talk in throws straight away
+                this.logger.info(String.format("Couldn't send reminder %s to its channel, sending it privately", document.get("_id")));
+            }
+        }
+        deliverPrivate(document, message);
+    }
+
+    /**
+     * Sends the reminder to the users DMs. If we can't DM them the reminder is dropped.
+     *
+     * @param document The reminder to send
+     * @param message  The message to send
+     */
+    private void deliverPrivate(Document document, Message message) {
+        User user = Misty.shards.getUserById(document.getLong("author"));
+        if (user == null) {
+            finish(document);
+            return;
+        }
+
+        try {
+            user.openPrivateChannel().queue(
+                    privateChannel -> {
+                        try {
+                            privateChannel.sendMessage(message).queue(sent -> finish(document), error -> finish(document));
+                        } catch (RuntimeException e) {
+                            finish(document);
+                        }
+                    },
+                    error -> finish(document)
+            );
+        } catch (RuntimeException e) {
+            finish(document);
+        }
+    }
+
+    /**
+     * Gets the channel the reminder was set in, as long as the user can still see it
+     *
+     * @param document The reminder
+     * @return The channel, null if it's a DM reminder or the channel is gone
+     */
+    private TextChannel getChannel(Document document) {
+        if (!document.containsKey("guild"))
+            return null;
+
+        Guild guild = Misty.shards.getGuildById(document.getLong("guild"));
+        if (guild == null)
+            return null;
+
+        TextChannel channel = guild.getTextChannelById(document.getLong("channel"));
+        if (channel == null)
+            return null;
+
+        // Make sure our user can see the channel
+        for (Member member : channel.getMembers()) {
+            if (member.getIdLong() == document.getLong("author"))
+                return channel;
+        }
+        return null;
+    }
+
+    /**
+     * Deletes a sent reminder and frees up its delivery slot
+     *
+     * @param document The reminder which was sent
+     */
+    private void finish(Document document) {
+        try {
+            db.deleteOne(Filters.eq("_id", document.getObjectId("_id")));
+        } finally {
+            deliveryPermits.release();
+        }
+    }
+}
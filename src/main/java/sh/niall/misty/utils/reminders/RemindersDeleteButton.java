@@ -26,16 +26,18 @@ public class RemindersDeleteButton extends PaginatorOption {
     @Override
     public void run() {
         Document document = ((RemindersPaginator) paginator).getCurrentDocument();
-        if (this.reminders.attemptDelete(ctx, document)) {
-            if (!paginator.deleteCurrentPage()) {
-                EmbedBuilder embedBuilder = new EmbedBuilder();
-                embedBuilder.setTitle("Reminders");
-                embedBuilder.setDescription("You have no more reminders!");
-                embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
-                embedBuilder.setColor(Color.RED);
-                paginator.gotoPage(paginator.addPage(embedBuilder));
+        this.reminders.attemptDelete(ctx, document, () -> {
+            synchronized (paginator) {
+                if (!paginator.deleteCurrentPage()) {
+                    EmbedBuilder embedBuilder = new EmbedBuilder();
+                    embedBuilder.setTitle("Reminders");
+                    embedBuilder.setDescription("You have no more reminders!");
+                    embedBuilder.setAuthor(UserSettings.getName(ctx), null, ctx.getAuthorUser().getEffectiveAvatarUrl());
+                    embedBuilder.setColor(Color.RED);
+                    paginator.gotoPage(paginator.addPage(embedBuilder));
+                }
+                paginator.refresh();
             }
-            paginator.refresh();
-        }
+        });
     }
 }
@@ -2,6 +2,7 @@ package sh.niall.misty.utils.settings;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
@@ -14,9 +15,8 @@ import sh.niall.yui.exceptions.CommandException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class UserSettings {
     final static public String[] timezones = new String[]{
@@ -41,6 +41,8 @@ public class UserSettings {
     final static DateTimeFormatter longDateTimeUK = DateTimeFormatter.ofPattern("dd MMMM yyyy - HH:mm");
     final static List<String> usTimezones = new ArrayList<>(Arrays.asList("America/New_York", "America/Chicago", "America/Los_Angeles"));
 
+    private static final UserSettingsCache cache = new UserSettingsCache(Misty.database.getCollection("users"), 10000, 10, TimeUnit.MINUTES);
+
     private MongoCollection<Document> db = Misty.database.getCollection("users");
     private Document originalDocument = null;
     private long userId;
@@ -55,14 +57,11 @@ public class UserSettings {
 
     public UserSettings(long userId) throws CommandException {
         this.userId = userId;
-        Document document = db.find(Filters.eq("userId", userId)).first();
-        if (document != null) {
-            originalDocument = document;
-            timezone = ZoneId.of(document.getString("timezone"));
-            language = Languages.valueOf(document.getString("language"));
-            preferredName = document.getString("preferredName");
+        Document document = cache.get(userId);
+        if (!document.isEmpty()) {
+            load(document);
         } else {
-            if (Misty.yui.getJda().getUserById(userId) == null)
+            if (Misty.shards.getUserById(userId) == null)
                 throw new CommandException("User does not exist!");
             save();
         }
@@ -91,7 +90,15 @@ public class UserSettings {
             document.append("timezone", timezone.getId());
             document.append("language", language.name());
             document.append("preferredName", preferredName);
-            db.insertOne(document);
+
+            // Another lookup may have created the user first, in which case we use their document
+            Document existing = null;
+            if (db.updateOne(Filters.eq("userId", userId), new Document("$setOnInsert", document), new UpdateOptions().upsert(true)).getUpsertedId() == null)
+                existing = db.find(Filters.eq("userId", userId)).first();
+            if (existing != null)
+                load(existing);
+            else
+                originalDocument = document;
         } else {
             if (!timezone.getId().equals(originalDocument.getString("timezone")))
                 document.append("timezone", timezone.getId());
@@ -102,12 +109,25 @@ public class UserSettings {
             if (!preferredName.equals(originalDocument.getString("preferredName")))
                 document.append("preferredName", preferredName);
 
-            if (!document.isEmpty())
+            if (!document.isEmpty()) {
                 db.updateOne(Filters.eq("userId", userId), new Document("$set", document));
+                originalDocument = new Document(originalDocument);
+                originalDocument.putAll(document);
+            }
         }
+
+        // Write through so other lookups see the change straight away
+        cache.put(userId, originalDocument);
         return this;
     }
 
+    private void load(Document document) {
+        originalDocument = document;
+        timezone = ZoneId.of(document.getString("timezone"));
+        language = Languages.valueOf(document.getString("language"));
+        preferredName = document.getString("preferredName");
+    }
+
     public static String getName(Context ctx) {
         return getName(ctx, ctx.getAuthor().getIdLong());
     }
@@ -117,31 +137,41 @@ public class UserSettings {
     }
 
     public static String getName(Guild guild, long targetId) {
-        try {
-            UserSettings userSettings = new UserSettings(targetId);
-            if (!userSettings.preferredName.isEmpty())
-                return userSettings.preferredName;
-
-            Member member = guild.getMemberById(targetId);
-            if (member != null)
-                return member.getEffectiveName();
-
-            return guild.getJDA().getUserById(targetId).getName();
-        } catch (CommandException ignored) {
-            return "Unknown User ( " + targetId + ")";
-        }
+        return getNames(guild, Collections.singleton(targetId)).get(targetId);
     }
 
     public static String getName(long targetId) {
-        try {
-            UserSettings userSettings = new UserSettings(targetId);
-            if (!userSettings.preferredName.isEmpty())
-                return userSettings.preferredName;
-
-            return Misty.yui.getJda().getUserById(targetId).getName();
-        } catch (CommandException ignored) {
-            return "Unknown User ( " + targetId + ")";
+        return getNames(null, Collections.singleton(targetId)).get(targetId);
+    }
+
+    /**
+     * Gets the names of multiple users, looking up their settings in one go.
+     * Uses their preferred name, then their nickname in the guild, then their username.
+     *
+     * @param guild     The guild to get nicknames from, null to skip nicknames
+     * @param targetIds The users to get the names of
+     * @return A map of each user to their name
+     */
+    public static Map<Long, String> getNames(Guild guild, Collection<Long> targetIds) {
+        Map<Long, String> names = new HashMap<>();
+        for (Map.Entry<Long, Document> entry : cache.getAll(targetIds).entrySet()) {
+            long targetId = entry.getKey();
+            String preferredName = entry.getValue().getString("preferredName");
+            if (preferredName != null && !preferredName.isEmpty()) {
+                names.put(targetId, preferredName);
+                continue;
+            }
+
+            Member member = (guild == null) ? null : guild.getMemberById(targetId);
+            if (member != null) {
+                names.put(targetId, member.getEffectiveName());
+                continue;
+            }
+
+            User user = Misty.shards.getUserById(targetId);
+            names.put(targetId, (user == null) ? "Unknown User ( " + targetId + ")" : user.getName());
         }
+        return names;
     }
 
     public static String getAvatarUrl(Context ctx, long userId) {
@@ -0,0 +1,104 @@
+package sh.niall.misty.utils.settings;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User Settings Cache
+ * A bounded cache of users documents, so looking up names doesn't query the database every time.
+ * Users without settings are cached too, as an empty document.
+ */
+public class UserSettingsCache {
+
+    private final LinkedHashMap<Long, Entry> documents = new LinkedHashMap<>(256, 0.75f, true);
+    private final MongoCollection<Document> db;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    public UserSettingsCache(MongoCollection<Document> db, int maxEntries, long ttl, TimeUnit timeUnit) {
+        this.db = db;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = timeUnit.toMillis(ttl);
+    }
+
+    /**
+     * Gets a users settings document
+     *
+     * @param userId The user to lookup
+     * @return The users document, empty if they have no settings
+     */
+    public Document get(long userId) {
+        return getAll(Collections.singleton(userId)).get(userId);
+    }
+
+    /**
+     * Gets multiple users settings documents, using one query for the users which aren't cached
+     *
+     * @param userIds The users to lookup
+     * @return A map of each user to their document, empty if they have no settings
+     */
+    public Map<Long, Document> getAll(Collection<Long> userIds) {
+        Map<Long, Document> results = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        long now = System.currentTimeMillis();
+
+        // First check the cache
+        synchronized (this) {
+            for (long userId : userIds) {
+                Entry entry = documents.get(userId);
+                if (entry != null && entry.expires > now)
+                    results.put(userId, entry.document);
+                else
+                    missing.add(userId);
+            }
+        }
+
+        if (missing.isEmpty())
+            return results;
+
+        // Lookup the rest at once, users we don't find have no settings
+        for (Document document : db.find(Filters.in("userId", new ArrayList<>(missing)))) {
+            long userId = document.getLong("userId");
+            missing.remove(userId);
+            results.put(userId, document);
+            put(userId, document);
+        }
+        for (long userId : missing) {
+            Document empty = new Document();
+            results.put(userId, empty);
+            put(userId, empty);
+        }
+        return results;
+    }
+
+    /**
+     * Stores a users document, replacing the cached one
+     *
+     * @param userId   The user the document belongs to
+     * @param document The users document
+     */
+    public synchronized void put(long userId, Document document) {
+        documents.put(userId, new Entry(document, System.currentTimeMillis() + ttlMillis));
+
+        // Evict the least recently used users
+        Iterator<Long> iterator = documents.keySet().iterator();
+        while (documents.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static class Entry {
+        final Document document;
+        final long expires;
+
+        Entry(Document document, long expires) {
+            this.document = document;
+            this.expires = expires;
+        }
+    }
+}
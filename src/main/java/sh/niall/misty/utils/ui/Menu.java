@@ -1,41 +1,36 @@
 package sh.niall.misty.utils.ui;
 
-import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+import sh.niall.misty.Misty;
 import sh.niall.yui.cogs.commands.context.Context;
 import sh.niall.yui.exceptions.CommandException;
-import sh.niall.yui.exceptions.YuiException;
-import sh.niall.yui.waiter.WaiterStorage;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 public class Menu {
 
     /**
-     * Creates a menu and waits for the users input.
+     * Creates a menu and listens for the users input.
      *
      * @param ctx      The context to send it in
      * @param question The question to ask
      * @param options  The options the user can pick
-     * @return The option the user picked
-     * @throws CommandException Thrown if the user times out
+     * @return A future which completes with the option the user picked, or a CommandException if they don't pick one
      */
-    public static int showMenu(Context ctx, String question, String[] options) throws YuiException {
+    public static CompletableFuture<Integer> showMenu(Context ctx, String question, String[] options) {
         return showMenu(ctx, question, options, 3);
     }
 
     /**
-     * Creates a menu and waits for the users input.
+     * Creates a menu and listens for the users input.
      *
      * @param ctx         The context to send it in
      * @param question    The question to ask
      * @param options     The options the user can pick
      * @param maxAttempts How many attempts they're allowed
-     * @return The option the user picked
-     * @throws CommandException Thrown if the user times out
+     * @return A future which completes with the option the user picked, or a CommandException if they don't pick one
      */
-    public static int showMenu(Context ctx, String question, String[] options, int maxAttempts) throws YuiException {
-        int attempts = 0;
-
+    public static CompletableFuture<Integer> showMenu(Context ctx, String question, String[] options, int maxAttempts) {
         // Ensure it ends with a new line
         if (!question.endsWith("\n"))
             question += "\n";
@@ -47,46 +42,53 @@ public class Menu {
             menuCount++;
             builder.append(String.format("%s. %s\n", menuCount, option));
         }
-        ctx.send(builder.toString() + String.format("(Reply menu number to select [1-%s])", menuCount));
+        ctx.sendq(builder.toString() + String.format("(Reply menu number to select [1-%s])", menuCount), null);
 
-        // Loop over for their attempts
-        while (attempts < maxAttempts) {
-            attempts++;
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        awaitOption(ctx, menuCount, maxAttempts, result);
+        return result;
+    }
 
-            // Listen for their message
-            WaiterStorage waiterStorage = new WaiterStorage(
-                    GuildMessageReceivedEvent.class,
-                    check -> {
-                        GuildMessageReceivedEvent e = (GuildMessageReceivedEvent) check;
-                        return (e.getChannel().getIdLong() == ctx.getChannel().getIdLong()) && (e.getAuthor().getIdLong() == ctx.getAuthor().getIdLong());
-                    }, 15, TimeUnit.SECONDS
-            );
-            ctx.getYui().waitForNewEvent(waiterStorage);
-            GuildMessageReceivedEvent messageEvent = (GuildMessageReceivedEvent) waiterStorage.getEvent();
+    /**
+     * Listens for the users next reply, asking again on invalid input until they run out of attempts.
+     *
+     * @param ctx          The context the menu was sent in
+     * @param menuCount    How many options there are
+     * @param attemptsLeft How many attempts they have left
+     * @param result       The future to complete
+     */
+    private static void awaitOption(Context ctx, int menuCount, int attemptsLeft, CompletableFuture<Integer> result) {
+        // If we run out of attempts, fail the menu
+        if (attemptsLeft <= 0) {
+            result.completeExceptionally(new CommandException("Quitting menu due to too many failed attempts."));
+            return;
+        }
 
+        Misty.interactions.waitForMessage(ctx.getChannel().getIdLong(), ctx.getAuthor().getIdLong(), 15, TimeUnit.SECONDS).whenComplete((messageReply, error) -> {
             // Quit the menu if they don't respond in time
-            if (messageEvent == null)
-                throw new CommandException("Quitting menu due to timeout");
+            if (messageReply == null) {
+                result.completeExceptionally(new CommandException("Quitting menu due to timeout"));
+                return;
+            }
 
             // Get the message and validate it's an int
-            String message = messageEvent.getMessage().getContentRaw();
+            String message = messageReply.getContentRaw();
             if (!message.matches("\\d+")) {
-                ctx.send("Invalid option, please only provide a number. Which option would you like?");
-                continue;
+                ctx.sendq("Invalid option, please only provide a number. Which option would you like?", null);
+                awaitOption(ctx, menuCount, attemptsLeft - 1, result);
+                return;
             }
 
             // Make sure it's a valid option
             int menuOption = Integer.parseInt(message);
             if (menuOption < 0 || menuCount < menuOption) {
-                ctx.send("Invalid option, please try again. hich option would you like?");
-                continue;
+                ctx.sendq("Invalid option, please try again. hich option would you like?", null);
+                awaitOption(ctx, menuCount, attemptsLeft - 1, result);
+                return;
             }
 
-            // Return the result
-            return menuOption;
-        }
-        // If we run out of attempts, throw an error
-        throw new CommandException("Quitting menu due to too many failed attempts.");
+            result.complete(menuOption);
+        });
     }
 
 }
@@ -0,0 +1,68 @@
+package sh.niall.misty.utils.ui.interactions;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import sh.niall.misty.Misty;
+import sh.niall.misty.utils.ui.interactions.interfaces.ReactionListener;
+import sh.niall.yui.exceptions.CommandException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confirmation
+ * A yes or no question answered with reactions
+ */
+public class Confirmation implements ReactionListener {
+
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    private final long target;
+    private Message message;
+
+    private Confirmation(long target) {
+        this.target = target;
+    }
+
+    /**
+     * Asks a user to confirm an action without waiting for their answer
+     *
+     * @param channel The channel to ask in
+     * @param embed   The embed to send
+     * @param target  The user to ask
+     * @return A future which completes with true if they confirm, or a CommandException if they don't respond
+     */
+    public static CompletableFuture<Boolean> ask(MessageChannel channel, MessageEmbed embed, long target) {
+        Confirmation confirmation = new Confirmation(target);
+        channel.sendMessage(embed).queue(message -> {
+            confirmation.message = message;
+            Misty.interactions.addReactionListener(message.getIdLong(), confirmation, 15, TimeUnit.SECONDS);
+            message.addReaction("✅").queue();
+            message.addReaction("❌").queue();
+        }, confirmation.result::completeExceptionally);
+        return confirmation.result;
+    }
+
+    @Override
+    public void onReaction(GuildMessageReactionAddEvent event) {
+        if (!event.getReactionEmote().isEmoji())
+            return;
+
+        String emoji = event.getReactionEmote().getEmoji();
+        if (event.getUserIdLong() != target || !(emoji.equals("✅") || emoji.equals("❌")))
+            return;
+
+        Misty.interactions.removeReactionListener(message.getIdLong());
+        message.delete().queue();
+
+        // Handle no logic
+        result.complete(!emoji.equals("❌"));
+    }
+
+    @Override
+    public void onTimeout() {
+        message.delete().queue();
+        result.completeExceptionally(new CommandException("Timed out waiting for conformation"));
+    }
+}
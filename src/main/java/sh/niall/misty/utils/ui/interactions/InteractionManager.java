@@ -0,0 +1,166 @@
+package sh.niall.misty.utils.ui.interactions;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.niall.misty.utils.ui.interactions.interfaces.ReactionListener;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Interaction Manager
+ * Routes reactions and replies to open menus without holding a thread while they wait.
+ * Menus are looked up by message id, and timeouts run on a shared scheduler.
+ */
+public class InteractionManager extends ListenerAdapter {
+
+    private final Map<Long, ReactionEntry> reactionListeners = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Message>> messageWaiters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final Logger logger = LoggerFactory.getLogger(InteractionManager.class);
+
+    /**
+     * Starts sending reactions on a message to a listener
+     *
+     * @param messageId The message to listen to
+     * @param listener  The listener to send reactions to
+     * @param timeout   How long to wait for a reaction before timing out
+     * @param timeUnit  The unit of the timeout
+     */
+    public void addReactionListener(long messageId, ReactionListener listener, long timeout, TimeUnit timeUnit) {
+        ReactionEntry entry = new ReactionEntry(listener);
+        ReactionEntry previous = reactionListeners.put(messageId, entry);
+        if (previous != null)
+            previous.cancelTimeout();
+        scheduleTimeout(messageId, entry, timeout, timeUnit);
+    }
+
+    /**
+     * Restarts the timeout of a listener, used after the user interacts with it
+     *
+     * @param messageId The message being listened to
+     * @param timeout   How long to wait for the next reaction
+     * @param timeUnit  The unit of the timeout
+     */
+    public void resetTimeout(long messageId, long timeout, TimeUnit timeUnit) {
+        ReactionEntry entry = reactionListeners.get(messageId);
+        if (entry != null)
+            scheduleTimeout(messageId, entry, timeout, timeUnit);
+    }
+
+    /**
+     * Stops listening to a message. Remains silent if nothing is listening.
+     *
+     * @param messageId The message to stop listening to
+     */
+    public void removeReactionListener(long messageId) {
+        ReactionEntry entry = reactionListeners.remove(messageId);
+        if (entry != null)
+            entry.cancelTimeout();
+    }
+
+    /**
+     * Waits for a users next message in a channel
+     *
+     * @param channelId The channel to wait in
+     * @param userId    The user to wait for
+     * @param timeout   How long to wait
+     * @param timeUnit  The unit of the timeout
+     * @return A future which completes with their message, or null if they didn't respond in time
+     */
+    public CompletableFuture<Message> waitForMessage(long channelId, long userId, long timeout, TimeUnit timeUnit) {
+        String key = channelId + ":" + userId;
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        CompletableFuture<Message> previous = messageWaiters.put(key, future);
+        if (previous != null)
+            previous.complete(null);
+
+        ScheduledFuture<?> timeoutFuture = scheduler.schedule(() -> {
+            messageWaiters.remove(key, future);
+            future.complete(null);
+        }, timeout, timeUnit);
+        future.whenComplete((message, error) -> timeoutFuture.cancel(false));
+        return future;
+    }
+
+    /**
+     * Gets the executor listeners are ran on
+     *
+     * @return The executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void onGuildMessageReactionAdd(GuildMessageReactionAddEvent event) {
+        if (event.getUserIdLong() == event.getJDA().getSelfUser().getIdLong())
+            return;
+
+        ReactionEntry entry = reactionListeners.get(event.getMessageIdLong());
+        if (entry == null)
+            return;
+
+        // Handle it off the event thread, menus may need to load things
+        executor.execute(() -> {
+            try {
+                entry.listener.onReaction(event);
+            } catch (Exception e) {
+                this.logger.error("Reaction listener failed", e);
+            }
+        });
+    }
+
+    @Override
+    public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
+        CompletableFuture<Message> future = messageWaiters.remove(event.getChannel().getIdLong() + ":" + event.getAuthor().getIdLong());
+        if (future != null)
+            future.complete(event.getMessage());
+    }
+
+    @Override
+    public void onMessageDelete(MessageDeleteEvent event) {
+        removeReactionListener(event.getMessageIdLong());
+    }
+
+    /**
+     * Schedules a listener to time out, replacing its current timeout
+     */
+    private void scheduleTimeout(long messageId, ReactionEntry entry, long timeout, TimeUnit timeUnit) {
+        entry.cancelTimeout();
+        entry.timeoutFuture = scheduler.schedule(() -> {
+            // Only time out if it's still the active listener for this message
+            if (!reactionListeners.remove(messageId, entry))
+                return;
+
+            executor.execute(() -> {
+                try {
+                    entry.listener.onTimeout();
+                } catch (Exception e) {
+                    this.logger.error("Reaction listener timeout failed", e);
+                }
+            });
+        }, timeout, timeUnit);
+    }
+
+    private static class ReactionEntry {
+        final ReactionListener listener;
+        volatile ScheduledFuture<?> timeoutFuture = null;
+
+        ReactionEntry(ReactionListener listener) {
+            this.listener = listener;
+        }
+
+        void cancelTimeout() {
+            ScheduledFuture<?> future = timeoutFuture;
+            if (future != null)
+                future.cancel(false);
+        }
+    }
+}
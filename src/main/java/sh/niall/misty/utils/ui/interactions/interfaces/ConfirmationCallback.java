@@ -0,0 +1,7 @@
+package sh.niall.misty.utils.ui.interactions.interfaces;
+
+import sh.niall.yui.exceptions.YuiException;
+
+public interface ConfirmationCallback {
+    void run(boolean confirmed) throws YuiException;
+}
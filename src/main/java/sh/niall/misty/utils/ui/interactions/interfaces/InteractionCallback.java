@@ -0,0 +1,7 @@
+package sh.niall.misty.utils.ui.interactions.interfaces;
+
+import sh.niall.yui.exceptions.YuiException;
+
+public interface InteractionCallback<T> {
+    void run(T result) throws YuiException;
+}
@@ -0,0 +1,9 @@
+package sh.niall.misty.utils.ui.interactions.interfaces;
+
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+
+public interface ReactionListener {
+    void onReaction(GuildMessageReactionAddEvent event);
+
+    void onTimeout();
+}
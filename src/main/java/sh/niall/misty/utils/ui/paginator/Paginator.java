@@ -4,21 +4,24 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageReaction;
 import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import sh.niall.misty.Misty;
+import sh.niall.misty.utils.ui.interactions.interfaces.ReactionListener;
 import sh.niall.misty.utils.ui.paginator.buttons.NextPageButton;
 import sh.niall.misty.utils.ui.paginator.buttons.PaginatorOption;
 import sh.niall.misty.utils.ui.paginator.buttons.PreviousPageButton;
+import sh.niall.misty.utils.ui.paginator.interfaces.PageSupplier;
 import sh.niall.yui.cogs.commands.context.Context;
 import sh.niall.yui.exceptions.CommandException;
 import sh.niall.yui.exceptions.YuiException;
-import sh.niall.yui.waiter.WaiterStorage;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.*;
 
-public class Paginator {
+public class Paginator implements ReactionListener {
 
     // Basic variables
     protected int timeout;
@@ -28,6 +31,12 @@ public class Paginator {
     protected List<PaginatorOption> options = new ArrayList<>(Arrays.asList(new PreviousPageButton(this), new NextPageButton(this)));
     private boolean anyoneCanUse;
 
+    // Lazy pages, only used when created with a page supplier
+    private PageSupplier pageSupplier = null;
+    private int pageCount = 0;
+    private final Map<Integer, CompletableFuture<EmbedBuilder>> renderedPages = new ConcurrentHashMap<>();
+    private static final ExecutorService renderPool = Executors.newFixedThreadPool(4);
+
     // Post message sent items
     protected long globalTimeout;
     private Message embedMessage;
@@ -39,25 +48,58 @@ public class Paginator {
         this.anyoneCanUse = anyoneCanUse;
     }
 
+    /**
+     * Creates a paginator which only builds pages when they're first shown.
+     * Built pages are kept, and the next page is built in the background while the current one is being read.
+     *
+     * @param ctx          The current context
+     * @param pageCount    How many pages there are
+     * @param pageSupplier Builds the requested page
+     * @param timeout      How long to wait for a reaction in seconds
+     * @param anyoneCanUse If anyone can change the page
+     */
+    public Paginator(Context ctx, int pageCount, PageSupplier pageSupplier, int timeout, boolean anyoneCanUse) {
+        this(ctx, new ArrayList<>(), timeout, anyoneCanUse);
+        this.pageSupplier = pageSupplier;
+        this.pageCount = pageCount;
+    }
+
     public void run() throws YuiException {
-        if (pages.isEmpty())
+        if (getPageCount() == 0)
             throw new CommandException("Paginator started without any pages!");
-        pages = setPageNumbers(pages);
-        embedMessage = ctx.send(pages.get(currentPage).build());
+
+        // Make sure the first page can be built before posting anything
+        EmbedBuilder firstPage;
+        if (pageSupplier == null) {
+            pages = setPageNumbers(pages);
+            firstPage = pages.get(currentPage);
+        } else {
+            try {
+                firstPage = renderPage(currentPage).join();
+            } catch (CompletionException e) {
+                renderedPages.clear();
+                if (e.getCause() instanceof YuiException)
+                    throw (YuiException) e.getCause();
+                throw new CommandException("There was an error loading the page.");
+            }
+        }
+
+        embedMessage = ctx.send(firstPage.build());
+        prefetchNextPage();
         globalTimeout = Instant.now().getEpochSecond() + 300; // 5 minute timeout
         if (updateReactions() != 0)
-            waitForReaction();
+            Misty.interactions.addReactionListener(embedMessage.getIdLong(), this, timeout, TimeUnit.SECONDS);
     }
 
     private int updateReactions() {
-        int amountOfPages = pages.size();
+        int amountOfPages = getPageCount();
         int posted = 0;
         for (PaginatorOption option : options) {
             if (option.shouldPost(amountOfPages)) {
-                embedMessage.addReaction(option.getEmoji()).complete();
+                embedMessage.addReaction(option.getEmoji()).queue();
                 posted++;
             } else
-                embedMessage.removeReaction(option.getEmoji()).complete();
+                embedMessage.removeReaction(option.getEmoji()).queue();
         }
         return posted;
     }
@@ -66,43 +108,98 @@ public class Paginator {
         embedMessage.clearReactions().queue();
     }
 
-    private void waitForReaction() throws YuiException {
-        WaiterStorage waiterStorage = new WaiterStorage(
-                GuildMessageReactionAddEvent.class,
-                check -> {
-                    GuildMessageReactionAddEvent e = (GuildMessageReactionAddEvent) check;
-                    boolean correctMessage = e.getMessageIdLong() == embedMessage.getIdLong();
-                    boolean correctUser;
-                    if (anyoneCanUse)
-                        correctUser = e.getUser().getIdLong() != ctx.getSelf().getIdLong();
-                    else
-                        correctUser = e.getUser().getIdLong() != ctx.getAuthor().getIdLong();
-                    return (correctMessage && correctUser);
-                },
-                timeout,
-                TimeUnit.SECONDS
-        );
-        ctx.getYui().waitForNewEvent(waiterStorage); // Blocks until .getEvent is returned
-        GuildMessageReactionAddEvent event = (GuildMessageReactionAddEvent) waiterStorage.getEvent();
-        if (event == null) {
-            stop();
+    /**
+     * Called by the interaction manager when someone reacts to the paginator
+     */
+    @Override
+    public synchronized void onReaction(GuildMessageReactionAddEvent event) {
+        // Make sure they're allowed to use it
+        if (!anyoneCanUse && event.getUserIdLong() != ctx.getAuthor().getIdLong())
             return;
-        }
+
         MessageReaction reaction = event.getReaction();
-        reaction.removeReaction(ctx.getAuthorUser()).queue();
+        reaction.removeReaction(event.getUser()).queue();
+        if (!reaction.getReactionEmote().isEmoji())
+            return;
+
         String reactionEmoji = reaction.getReactionEmote().getEmoji();
         for (PaginatorOption option : options) {
             if (option.equals(reactionEmoji))
                 option.run();
         }
+
         if (globalTimeout < Instant.now().getEpochSecond()) {
+            Misty.interactions.removeReactionListener(embedMessage.getIdLong());
             stop();
             return;
         }
-        waitForReaction();
+        Misty.interactions.resetTimeout(embedMessage.getIdLong(), timeout, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onTimeout() {
+        stop();
+    }
+
+    /**
+     * Gets how many pages the paginator has
+     *
+     * @return The amount of pages
+     */
+    public int getPageCount() {
+        return (pageSupplier == null) ? pages.size() : pageCount;
+    }
+
+    /**
+     * Gets a page, building it if we're using a page supplier.
+     * If the page fails to build, an error page is returned and the page is built again next time.
+     *
+     * @param index The page to get
+     * @return The page
+     */
+    private EmbedBuilder getPage(int index) {
+        if (pageSupplier == null)
+            return pages.get(index);
+
+        try {
+            return renderPage(index).join();
+        } catch (CompletionException e) {
+            renderedPages.remove(index);
+            EmbedBuilder embedBuilder = new EmbedBuilder();
+            embedBuilder.setTitle("Failed to load this page");
+            embedBuilder.setDescription("⚠️ " + e.getCause().getMessage());
+            embedBuilder.setFooter(String.format("Page %s of %s", index + 1, pageCount));
+            return embedBuilder;
+        }
+    }
+
+    /**
+     * Builds a page on the render pool, reusing the page if it was already built
+     *
+     * @param index The page to build
+     * @return A future which completes with the page
+     */
+    private CompletableFuture<EmbedBuilder> renderPage(int index) {
+        return renderedPages.computeIfAbsent(index, page -> CompletableFuture.supplyAsync(() -> {
+            try {
+                EmbedBuilder embedBuilder = pageSupplier.getPage(page);
+                embedBuilder.setFooter(String.format("Page %s of %s", page + 1, pageCount));
+                return embedBuilder;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, renderPool));
+    }
+
+    /**
+     * Starts building the next page so it's ready when the user moves to it
+     */
+    private void prefetchNextPage() {
+        if (pageSupplier != null && pageCount > 1)
+            renderPage((currentPage + 1) % pageCount);
     }
 
-    public int addPage(EmbedBuilder embedBuilder) {
+    public synchronized int addPage(EmbedBuilder embedBuilder) {
         if (pages.contains(embedBuilder))
             return -1;
 
@@ -110,7 +207,7 @@ public class Paginator {
         return pages.indexOf(embedBuilder);
     }
 
-    public boolean deleteCurrentPage() {
+    public synchronized boolean deleteCurrentPage() {
         pages.remove(currentPage);
         if (pages.size() == 0)
             return false;
@@ -120,33 +217,35 @@ public class Paginator {
         return true;
     }
 
-    public void gotoPage(int index) {
-        if (index >= pages.size())
+    public synchronized void gotoPage(int index) {
+        if (index >= getPageCount())
             return;
         currentPage = index;
         refresh();
     }
 
-    public void refresh() {
-        pages = setPageNumbers(pages);
-        embedMessage.editMessage(pages.get(currentPage).build()).queue();
+    public synchronized void refresh() {
+        if (pageSupplier == null)
+            pages = setPageNumbers(pages);
+        embedMessage.editMessage(getPage(currentPage).build()).queue();
         updateReactions();
+        prefetchNextPage();
     }
 
 
     /* Button methods */
-    public void nextPage() {
+    public synchronized void nextPage() {
         currentPage++;
-        if (currentPage == pages.size()) {
+        if (currentPage == getPageCount()) {
             currentPage = 0;
         }
         refresh();
     }
 
-    public void previousPage() {
+    public synchronized void previousPage() {
         currentPage--;
         if (currentPage == -1) {
-            currentPage = pages.size() - 1;
+            currentPage = getPageCount() - 1;
         }
         refresh();
     }
@@ -0,0 +1,7 @@
+package sh.niall.misty.utils.ui.paginator.interfaces;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+
+public interface PageSupplier {
+    EmbedBuilder getPage(int page) throws Exception;
+}
@@ -0,0 +1,62 @@
+package sh.niall.misty.utils.audio.helpers;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sun.management.ThreadMXBean;
+import org.junit.Test;
+import sh.niall.misty.utils.audio.AudioStats;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class SendHandlerTest {
+
+    private static final int frames = 100000;
+    private static final int warmupRounds = 10;
+    private static final int measuredRounds = 5;
+
+    /**
+     * JDA asks every connected guild for a frame every 20ms, even while nothing is playing, so nothing on this path
+     * should allocate. Uses a real Lava Player with nothing playing.
+     */
+    @Test
+    public void sendPathDoesNotAllocate() {
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        AudioPlayerManager audioPlayerManager = new DefaultAudioPlayerManager();
+        try {
+            SendHandler sendHandler = new SendHandler(audioPlayerManager.createPlayer(), AudioStats.forGuild());
+
+            // Let the JIT compile the path first
+            for (int i = 0; i < warmupRounds; i++)
+                sendFrames(sendHandler);
+
+            // The JIT can still allocate a few hundred bytes on this thread now and then, but anything allocated per
+            // frame is at least 16 bytes, so every round must stay under a byte per frame
+            for (int round = 0; round < measuredRounds; round++) {
+                // Reading the counter may allocate, so take away what an empty measurement costs
+                long emptyStart = threadMXBean.getThreadAllocatedBytes(threadId);
+                long overhead = threadMXBean.getThreadAllocatedBytes(threadId) - emptyStart;
+
+                long start = threadMXBean.getThreadAllocatedBytes(threadId);
+                sendFrames(sendHandler);
+                long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start - overhead;
+                assertTrue("Round " + round + " allocated " + allocated + " bytes for " + frames + " frames", allocated < frames);
+            }
+        } finally {
+            audioPlayerManager.shutdown();
+        }
+    }
+
+    private void sendFrames(SendHandler sendHandler) {
+        // JDA only asks for the buffer when a frame was provided
+        for (int i = 0; i < frames; i++)
+            assertFalse(sendHandler.canProvide());
+    }
+}